@@ -0,0 +1,63 @@
+package io.dankoller.github.webquizengine;
+
+import io.dankoller.github.webquizengine.entity.Quiz;
+import io.dankoller.github.webquizengine.entity.user.User;
+import io.dankoller.github.webquizengine.persistence.QuizRepository;
+import io.dankoller.github.webquizengine.persistence.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class starts the application against an in-memory H2 database and seeds it with a user and a number of quizzes.
+ * Benchmarks that need Spring beans take it as a parameter, so the context is started once per fork.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+    public static final String EMAIL = "benchmark@example.com";
+    public static final String PASSWORD = "benchmark";
+    public static final int QUIZ_COUNT = 1000;
+
+    private ConfigurableApplicationContext context;
+    private int firstQuizId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // Command line arguments take precedence over application.properties
+        context = new SpringApplicationBuilder(SpringWebQuizEngineApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN");
+
+        User user = new User(EMAIL, getBean(PasswordEncoder.class).encode(PASSWORD));
+        getBean(UserRepository.class).save(user);
+
+        List<Quiz> quizzes = new ArrayList<>(QUIZ_COUNT);
+        for (int i = 0; i < QUIZ_COUNT; i++) {
+            quizzes.add(new Quiz("Quiz " + i, "Which options are correct?",
+                    new String[]{"Robot", "Tea leaf", "Cup of coffee", "Bug"}, new int[]{0, 2}, user));
+        }
+        getBean(QuizRepository.class).saveAll(quizzes);
+        firstQuizId = quizzes.get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public int getFirstQuizId() {
+        return firstQuizId;
+    }
+}
@@ -0,0 +1,49 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.ApplicationState;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the cost of authenticating a request: loading the user and verifying the BCrypt hash, which
+ * is what every cache miss of the {@link CredentialCache} pays, compared with a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final String hash = passwordEncoder.encode(ApplicationState.PASSWORD);
+    private UserDetailsServiceImpl userDetailsService;
+    private CredentialCache credentialCache;
+
+    @Setup
+    public void setup(ApplicationState application) {
+        userDetailsService = application.getBean(UserDetailsServiceImpl.class);
+        credentialCache = application.getBean(CredentialCache.class);
+        credentialCache.put(ApplicationState.EMAIL, ApplicationState.PASSWORD,
+                userDetailsService.loadUserByUsername(ApplicationState.EMAIL));
+    }
+
+    @Benchmark
+    public Object loadUserByUsername() {
+        return userDetailsService.loadUserByUsername(ApplicationState.EMAIL);
+    }
+
+    @Benchmark
+    public boolean bcryptMatches() {
+        return passwordEncoder.matches(ApplicationState.PASSWORD, hash);
+    }
+
+    @Benchmark
+    public Object credentialCacheHit() {
+        return credentialCache.get(ApplicationState.EMAIL, ApplicationState.PASSWORD);
+    }
+}
@@ -0,0 +1,39 @@
+package io.dankoller.github.webquizengine.persistence;
+
+import io.dankoller.github.webquizengine.ApplicationState;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares loading a page of quizzes as entities with loading it through the response projection. Run
+ * it with the gc profiler (enabled in build.gradle) to see the allocation per page (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuizListBenchmark {
+    private final Pageable pageable = PageRequest.of(0, 10, Sort.Direction.DESC, "id");
+    private QuizRepository quizRepository;
+
+    @Setup
+    public void setup(ApplicationState application) {
+        quizRepository = application.getBean(QuizRepository.class);
+    }
+
+    @Benchmark
+    public Object entityPage() {
+        return quizRepository.findAll(pageable);
+    }
+
+    @Benchmark
+    public Object projectionPage() {
+        return quizRepository.findAllResponses(pageable);
+    }
+}
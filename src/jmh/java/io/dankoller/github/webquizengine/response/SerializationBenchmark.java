@@ -0,0 +1,81 @@
+package io.dankoller.github.webquizengine.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the Jackson serialization of the quiz responses with the same defaults that Spring MVC uses.
+ * Writing a quiz from the bytes of its snapshot is compared with serializing a new response, the gc profiler shows the
+ * allocation of both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private QuizResponse quizResponse;
+    private Page<Quiz> quizPage;
+    private QuizSnapshot quizSnapshot;
+    // Discards the bytes like a response stream, unlike OutputStream.nullOutputStream() it can be written after close
+    private final OutputStream responseStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setup() {
+        String[] options = {"Robot", "Tea leaf", "Cup of coffee", "Bug"};
+        quizResponse = new QuizResponse(1, "The Java Logo", "What is depicted on the Java logo?", options);
+
+        List<Quiz> quizzes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Quiz quiz = new Quiz("Quiz " + i, "What is depicted on the Java logo?", options, new int[]{2}, null);
+            quiz.setId(i);
+            quizzes.add(quiz);
+        }
+        quizPage = new PageImpl<>(quizzes, PageRequest.of(0, 10, Sort.Direction.DESC, "id"), 1000);
+        quizSnapshot = new QuizSnapshot(quizzes.get(1), objectMapper);
+    }
+
+    @Benchmark
+    public byte[] serializeQuizResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(quizResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeQuizPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(quizPage);
+    }
+
+    @Benchmark
+    public void writeQuizResponse() throws IOException {
+        objectMapper.writeValue(responseStream, quizSnapshot.toResponse());
+    }
+
+    @Benchmark
+    public void writeSerializedQuiz() throws IOException {
+        responseStream.write(quizSnapshot.getBody(false).bytes());
+    }
+}
@@ -0,0 +1,72 @@
+package io.dankoller.github.webquizengine.response;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the wire formats of a page of quizzes: the time to encode the page, the time to decode it
+ * and the size of the encoded page, which is printed once per fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"JSON", "CBOR", "SMILE"})
+    private WireFormat format;
+
+    private ObjectMapper objectMapper;
+    private Page<Quiz> quizPage;
+    private byte[] encodedPage;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(factoryOf(format)).build();
+
+        String[] options = {"Robot", "Tea leaf", "Cup of coffee", "Bug"};
+        List<Quiz> quizzes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Quiz quiz = new Quiz("Quiz " + i, "What is depicted on the Java logo?", options, new int[]{2}, null);
+            quiz.setId(i);
+            quizzes.add(quiz);
+        }
+        quizPage = new PageImpl<>(quizzes, PageRequest.of(0, 30, Sort.Direction.DESC, "id"), 1000);
+        encodedPage = objectMapper.writeValueAsBytes(quizPage);
+        System.out.printf("%n%s page of 30 quizzes: %d bytes%n", format, encodedPage.length);
+    }
+
+    @Benchmark
+    public byte[] encodePage() throws IOException {
+        return objectMapper.writeValueAsBytes(quizPage);
+    }
+
+    @Benchmark
+    public JsonNode decodePage() throws IOException {
+        return objectMapper.readTree(encodedPage);
+    }
+
+    private static JsonFactory factoryOf(WireFormat format) {
+        return switch (format) {
+            case JSON -> new JsonFactory();
+            case CBOR -> new CBORFactory();
+            case SMILE -> new SmileFactory();
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package io.dankoller.github.webquizengine.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares grading a solve request against the precompiled {@link AnswerMask} with the previous path,
+ * which deserialized the answer column of the quiz and compared it with {@link Arrays#equals(int[], int[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnswerMaskBenchmark {
+    private final int[] correctAnswer = {0, 2};
+    private final int[] userAnswer = {0, 2};
+    private byte[] serializedAnswer;
+    private AnswerMask answerMask;
+
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(correctAnswer);
+        }
+        serializedAnswer = bytes.toByteArray();
+        answerMask = AnswerMask.compile(correctAnswer, 4);
+    }
+
+    @Benchmark
+    public boolean legacyDeserializeAndCompare() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedAnswer))) {
+            return Arrays.equals(userAnswer, (int[]) in.readObject());
+        }
+    }
+
+    @Benchmark
+    public boolean legacyCompare() {
+        return Arrays.equals(userAnswer, correctAnswer);
+    }
+
+    @Benchmark
+    public boolean compiledMask() {
+        return answerMask.matches(userAnswer);
+    }
+}
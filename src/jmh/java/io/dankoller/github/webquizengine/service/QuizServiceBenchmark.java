@@ -0,0 +1,48 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.ApplicationState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the {@link QuizService} hot paths against an in-memory H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuizServiceBenchmark {
+    private final int[] correctAnswer = {2, 0};
+    private final int[] wrongAnswer = {1};
+    private QuizService quizService;
+    private int quizId;
+
+    @Setup
+    public void setup(ApplicationState application) {
+        quizService = application.getBean(QuizService.class);
+        quizId = application.getFirstQuizId();
+    }
+
+    @Benchmark
+    public Object validateCorrectAnswer() {
+        return quizService.validateAnswer(ApplicationState.EMAIL, quizId, correctAnswer);
+    }
+
+    @Benchmark
+    public Object validateWrongAnswer() {
+        return quizService.validateAnswer(ApplicationState.EMAIL, quizId, wrongAnswer);
+    }
+
+    @Benchmark
+    public Object getAllQuizzesFirstPage() {
+        return quizService.getAllQuizzes(0, 10, "id");
+    }
+
+    @Benchmark
+    public Object getAllQuizzesLastPage() {
+        return quizService.getAllQuizzes(ApplicationState.QUIZ_COUNT / 10 - 1, 10, "id");
+    }
+}
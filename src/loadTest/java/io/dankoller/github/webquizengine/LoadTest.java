@@ -0,0 +1,165 @@
+package io.dankoller.github.webquizengine;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class is a simple closed-loop HTTP load test against a running instance. Every client repeatedly requests a
+ * quiz and solves it, the next request is sent as soon as the previous response arrived. At the end the throughput,
+ * the latency percentiles and the memory and thread count reported by the actuator of the server are printed.
+ * <p>
+ * Run it against the default thread pool and against <code>quiz.threads.virtual=true</code> to compare both modes:
+ * <code>./gradlew loadTest -Pclients=1000 -Pduration=30</code>
+ */
+public class LoadTest {
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Pattern VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.E]+)");
+    private static final int MAX_LATENCY_MILLIS = 60_000;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final String baseUrl;
+    private final String email = "load-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+    private final String authorization = "Basic " + Base64.getEncoder()
+            .encodeToString((email + ":password").getBytes(StandardCharsets.UTF_8));
+    private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY_MILLIS + 1); // histogram in ms
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+    private int quizId;
+
+    private LoadTest(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8889";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        new LoadTest(baseUrl).run(clients, seconds);
+    }
+
+    private void run(int clients, int seconds) throws Exception {
+        setup();
+        System.out.printf("Running %d clients for %d seconds against %s%n", clients, seconds, baseUrl);
+
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[clients];
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            loops[i] = loop(i % 2 == 0);
+        }
+        Thread.sleep(seconds * 1000L);
+        // Sample the server while it is still under load
+        String memory = metric("jvm.memory.used");
+        String threads = metric("jvm.threads.live");
+        running = false;
+        CompletableFuture.allOf(loops).join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Requests:    %d (%d errors)%n", requests.sum(), errors.sum());
+        System.out.printf("Throughput:  %.1f requests/s%n", requests.sum() / elapsed);
+        System.out.printf("Latency:     p50 %d ms, p99 %d ms, max %d ms%n",
+                percentile(0.50), percentile(0.99), percentile(1.0));
+        System.out.printf("Server:      %s bytes of memory used, %s live threads%n", memory, threads);
+    }
+
+    /**
+     * Helper method to register the load test user and create the quiz that is requested.
+     */
+    private void setup() throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + email + "\",\"password\":\"password\"}"))
+                .build());
+        String quiz = send(request("/api/quizzes")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Load test\",\"text\":\"Pick the first\"," +
+                        "\"options\":[\"First\",\"Second\"],\"answer\":[0]}"))
+                .build());
+        Matcher matcher = ID.matcher(quiz);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Could not create the quiz: " + quiz);
+        }
+        quizId = Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * Helper method that sends requests of one client until the test ends.
+     *
+     * @param solve True if the client solves the quiz, false if it only requests it
+     * @return A future that completes when the client has stopped
+     */
+    private CompletableFuture<Void> loop(boolean solve) {
+        if (!running) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = solve
+                ? request("/api/quizzes/" + quizId + "/solve")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"answer\":[0]}"))
+                .build()
+                : request("/api/quizzes/" + quizId).GET().build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    record(start, failure == null && response.statusCode() == 200);
+                    return null;
+                })
+                .thenCompose(ignored -> loop(solve));
+    }
+
+    private void record(long start, boolean success) {
+        int millis = (int) Math.min(MAX_LATENCY_MILLIS, (System.nanoTime() - start) / 1_000_000);
+        latencies.incrementAndGet(millis);
+        requests.increment();
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    private long percentile(double percentile) {
+        long total = requests.sum();
+        long seen = 0;
+        for (int millis = 0; millis <= MAX_LATENCY_MILLIS; millis++) {
+            seen += latencies.get(millis);
+            if (seen > 0 && seen >= total * percentile) {
+                return millis;
+            }
+        }
+        return MAX_LATENCY_MILLIS;
+    }
+
+    private String metric(String name) {
+        try {
+            Matcher matcher = VALUE.matcher(send(request("/actuator/metrics/" + name).GET().build()));
+            return matcher.find() ? String.format("%.0f", Double.parseDouble(matcher.group(1))) : "n/a";
+        } catch (IOException | InterruptedException e) {
+            return "n/a";
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", authorization);
+    }
+
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,72 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsServiceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * This filter authenticates requests that carry an <code>Authorization: Bearer</code> header issued by the
+ * {@link TokenProvider}. Requests without a bearer token are passed on unchanged, so HTTP Basic keeps working. The
+ * login endpoint is skipped, so a token can only be issued for the password of the user and not renewed with a token.
+ * The authentication is a {@link PreAuthenticatedAuthenticationToken}, which tells it apart from HTTP Basic.
+ */
+public class BearerTokenAuthenticationFilter extends OncePerRequestFilter {
+    public static final String LOGIN_PATH = "/api/login";
+    private static final String PREFIX = "Bearer ";
+
+    private final TokenProvider tokenProvider;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final AuthenticationEntryPoint authenticationEntryPoint;
+    private final WebAuthenticationDetailsSource detailsSource = new WebAuthenticationDetailsSource();
+
+    public BearerTokenAuthenticationFilter(TokenProvider tokenProvider,
+                                           UserDetailsServiceImpl userDetailsService,
+                                           AuthenticationEntryPoint authenticationEntryPoint) {
+        this.tokenProvider = tokenProvider;
+        this.userDetailsService = userDetailsService;
+        this.authenticationEntryPoint = authenticationEntryPoint;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return LOGIN_PATH.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        TokenProvider.Claims claims = tokenProvider.verify(header.substring(PREFIX.length()).trim());
+        UserDetailsImpl user = claims != null ? userDetailsService.loadUserById(claims.userId(), claims.email()) : null;
+        if (user == null) {
+            SecurityContextHolder.clearContext();
+            authenticationEntryPoint.commence(request, response,
+                    new BadCredentialsException("Invalid or expired token"));
+            return;
+        }
+
+        PreAuthenticatedAuthenticationToken authentication =
+                new PreAuthenticatedAuthenticationToken(user, null, user.getAuthorities());
+        authentication.setDetails(detailsSource.buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,57 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * This class wraps another {@link AuthenticationProvider} and skips it for credentials that are found in the
+ * {@link CredentialCache}. Only successful authentications are cached.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+    private final AuthenticationProvider delegate;
+    private final CredentialCache credentialCache;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CredentialCache credentialCache) {
+        this.delegate = delegate;
+        this.credentialCache = credentialCache;
+    }
+
+    /**
+     * This method authenticates the user from the cache if possible and falls back to the delegate otherwise.
+     *
+     * @param authentication The authentication request
+     * @return A fully authenticated object including credentials
+     * @throws AuthenticationException If the authentication fails
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String password = credentials.toString();
+
+        UserDetailsImpl cachedUser = credentialCache.get(username, password);
+        if (cachedUser != null) {
+            UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(
+                    cachedUser, credentials, cachedUser.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof UserDetailsImpl user) {
+            credentialCache.put(username, password, user);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,107 @@
+package io.dankoller.github.webquizengine.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * This class caches credentials that have already been verified, so repeated requests of the same user neither query
+ * the database nor run BCrypt again. Entries are keyed on an HMAC-SHA256 of the credentials, the plain password is
+ * never stored. The HMAC key is generated randomly for every process and never leaves it, so the keys in a heap dump
+ * cannot be used to guess passwords offline.
+ */
+@Component
+public class CredentialCache {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<CredentialKey, UserDetailsImpl> cache;
+    private final SecretKeySpec hmacKey;
+
+    public CredentialCache(MeterRegistry meterRegistry,
+                           @Value("${quiz.auth.cache.max-size:10000}") long maxSize,
+                           @Value("${quiz.auth.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.hmacKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        // Exposes cache.gets (hit/miss), cache.evictions and cache.size under /actuator/metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "credentials");
+    }
+
+    /**
+     * This method returns the user that has been verified with the given credentials before.
+     *
+     * @param username The username of the user
+     * @param password The raw password of the user
+     * @return The cached user or null if the credentials are not cached
+     */
+    public UserDetailsImpl get(String username, String password) {
+        return cache.getIfPresent(keyOf(username, password));
+    }
+
+    /**
+     * This method stores a successfully verified user for the given credentials.
+     *
+     * @param username The username of the user
+     * @param password The raw password of the user
+     * @param user     The verified user
+     */
+    public void put(String username, String password, UserDetailsImpl user) {
+        cache.put(keyOf(username, password), user);
+    }
+
+    /**
+     * This method removes all cached credentials of a user, e.g. after the password changed or the user was deleted.
+     *
+     * @param email The email of the user
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        String normalizedEmail = email.toLowerCase(Locale.ROOT);
+        cache.asMap().keySet().removeIf(key -> key.email().equals(normalizedEmail));
+    }
+
+    /**
+     * Helper method to build the cache key of the given credentials.
+     *
+     * @param username The username of the user
+     * @param password The raw password of the user
+     * @return The cache key
+     */
+    private CredentialKey keyOf(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            String hash = Base64.getEncoder().encodeToString(mac.doFinal());
+            return new CredentialKey(username.toLowerCase(Locale.ROOT), hash);
+        } catch (GeneralSecurityException e) {
+            // Every Java platform is required to support HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CredentialKey(String email, String digest) {
+    }
+}
@@ -0,0 +1,38 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.entity.user.User;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * This class is a JPA entity listener that evicts a user from the {@link CredentialCache} whenever the user is
+ * updated (e.g. a password change) or deleted. The user is evicted when the transaction commits, otherwise a
+ * concurrent login that still reads the old password could cache it again. It is instantiated by Hibernate through
+ * the Spring bean container.
+ */
+public class CredentialCacheInvalidator {
+    private final CredentialCache credentialCache;
+
+    public CredentialCacheInvalidator(CredentialCache credentialCache) {
+        this.credentialCache = credentialCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String email = user.getEmail();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            credentialCache.evict(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                credentialCache.evict(email);
+            }
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.response.TokenResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * This class issues and verifies signed, stateless bearer tokens. A token consists of the expiry time, the id and the
+ * email of the user, signed with HMAC-SHA256. Verifying a token neither queries the database nor runs BCrypt, the
+ * filters check afterwards that the user still exists.
+ */
+@Component
+@ConditionalOnProperty(name = "quiz.auth.token.enabled", havingValue = "true")
+public class TokenProvider {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+
+    @Autowired
+    public TokenProvider(@Value("${quiz.auth.token.secret:}") String secret,
+                         @Value("${quiz.auth.token.ttl:1h}") Duration ttl) {
+        this(secret, ttl, Clock.systemUTC());
+    }
+
+    TokenProvider(String secret, Duration ttl, Clock clock) {
+        this.key = new SecretKeySpec(secretBytes(secret), ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * This method issues a new token for the given user.
+     *
+     * @param userId The id of the user
+     * @param email  The email of the user
+     * @return A response with the token and its lifetime
+     */
+    public TokenResponse issue(long userId, String email) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        byte[] payload = (expiresAt + ":" + userId + ":" + email).getBytes(StandardCharsets.UTF_8);
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new TokenResponse(token, "Bearer", ttl.getSeconds());
+    }
+
+    /**
+     * This method verifies the signature and expiry of a token.
+     *
+     * @param token The token sent by the client
+     * @return The user of the token or null if the token is invalid or expired
+     */
+    public Claims verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, separator));
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Constant time comparison, so the signature cannot be guessed byte by byte
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        String claims = new String(payload, StandardCharsets.UTF_8);
+        int first = claims.indexOf(':');
+        int second = claims.indexOf(':', first + 1);
+        if (first <= 0 || second <= first + 1) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(claims.substring(0, first));
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return null;
+            }
+            return new Claims(Long.parseLong(claims.substring(first + 1, second)), claims.substring(second + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Helper method to sign a payload with the secret key.
+     *
+     * @param payload The payload to sign
+     * @return The signature
+     */
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    /**
+     * Helper method to create a new {@link Mac}. Mac instances are not thread-safe, so every thread gets its own.
+     *
+     * @return A new Mac initialized with the secret key
+     */
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Helper method to get the key material. Without a configured secret a random one is generated, which means that
+     * issued tokens become invalid when the application restarts.
+     *
+     * @param secret The configured secret
+     * @return The key material
+     */
+    private static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isBlank()) {
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The user a token was issued for.
+     */
+    public record Claims(long userId, String email) {
+    }
+}
@@ -1,43 +1,61 @@
 package io.dankoller.github.webquizengine.auth;
 
 import io.dankoller.github.webquizengine.entity.user.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @SuppressWarnings({"unused", "deprecation"})
 public class WebSecurityConfigurerImpl extends WebSecurityConfigurerAdapter {
     private final RestAuthenticationEntryPoint restAuthenticationEntryPoint;
     private final UserDetailsServiceImpl userDetailsService;
+    private final CredentialCache credentialCache;
+    private final PasswordEncoder passwordEncoder;
+    private final TokenProvider tokenProvider; // null if token authentication is disabled
 
     public WebSecurityConfigurerImpl(RestAuthenticationEntryPoint restAuthenticationEntryPoint,
-                                     UserDetailsServiceImpl userDetailsService) {
+                                     UserDetailsServiceImpl userDetailsService,
+                                     CredentialCache credentialCache,
+                                     PasswordEncoder passwordEncoder,
+                                     ObjectProvider<TokenProvider> tokenProvider) {
         this.restAuthenticationEntryPoint = restAuthenticationEntryPoint;
         this.userDetailsService = userDetailsService;
+        this.credentialCache = credentialCache;
+        this.passwordEncoder = passwordEncoder;
+        this.tokenProvider = tokenProvider.getIfAvailable();
     }
 
     /**
      * This method is used to configure the {@link AuthenticationManagerBuilder} to specify which UserDetailsService and
-     * {@link PasswordEncoder} to use.
+     * {@link PasswordEncoder} to use. Verified credentials are cached, so the user lookup and the BCrypt check only run
+     * on a cache miss.
      *
      * @param auth The {@link AuthenticationManagerBuilder} to use
-     * @throws Exception If an error occurs
      */
     @Override
-    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth
-                .userDetailsService(userDetailsService)
-                .passwordEncoder(getEncoder());
+    protected void configure(AuthenticationManagerBuilder auth) {
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        auth.authenticationProvider(new CachingAuthenticationProvider(daoAuthenticationProvider, credentialCache));
     }
 
     /**
      * This method is used to configure the security of the web application by restricting access based on the
-     * HttpServletRequest.
+     * HttpServletRequest. If token authentication is enabled, bearer tokens are accepted next to HTTP Basic and no
+     * sessions are created.
      *
      * @param http the {@link HttpSecurity} to modify
      * @throws Exception if an error occurs
@@ -53,17 +71,27 @@ public class WebSecurityConfigurerImpl extends WebSecurityConfigurerAdapter {
                 .authorizeRequests()
                 // Api endpoints
                 .mvcMatchers("/api/register").permitAll()
+                .mvcMatchers("/api/login").hasRole("USER")
                 .mvcMatchers("/api/quizzes").hasRole("USER")
                 .mvcMatchers("/api/quizzes/**").hasRole("USER");
+
+        if (tokenProvider != null) {
+            http
+                    .addFilterBefore(new BearerTokenAuthenticationFilter(tokenProvider, userDetailsService,
+                                    restAuthenticationEntryPoint), BasicAuthenticationFilter.class)
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        }
     }
 
     /**
-     * This method is used to encrypt the password of the user using the BCryptPasswordEncoder.
+     * This method is used to encrypt the password of the user using the BCryptPasswordEncoder. The time of every
+     * encoding and verification is recorded.
      *
+     * @param meterRegistry The registry of the timers
      * @return the {@link PasswordEncoder} to use
      */
     @Bean
-    public static PasswordEncoder getEncoder() {
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder getEncoder(MeterRegistry meterRegistry) {
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package io.dankoller.github.webquizengine.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import io.dankoller.github.webquizengine.persistence.QuizRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * This class is a bounded read-through cache of {@link QuizSnapshot}s. Entries expire after the configured time to
+ * live and are replaced or invalidated by the {@link io.dankoller.github.webquizengine.service.QuizService} whenever a
+ * quiz is created, updated or deleted. It also counts these changes, so lists of quizzes can be revalidated without a
+ * query.
+ */
+@Component
+public class QuizCache {
+    private static final String CACHE_NAME = "quizzes";
+
+    private final QuizRepository quizRepository;
+    private final ObjectMapper objectMapper;
+    private final Cache<Integer, QuizSnapshot> cache;
+    // The start time keeps the ETags of a restarted instance from matching the ones it has sent before
+    private final String instance = Long.toHexString(System.currentTimeMillis());
+    private final AtomicLong version = new AtomicLong();
+
+    public QuizCache(QuizRepository quizRepository,
+                     ObjectMapper objectMapper,
+                     MeterRegistry meterRegistry,
+                     @Value("${quiz.cache.max-size:10000}") long maxSize,
+                     @Value("${quiz.cache.ttl:10m}") Duration ttl) {
+        this.quizRepository = quizRepository;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Exposes cache.gets (hit/miss), cache.evictions and cache.size under /actuator/metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", CACHE_NAME)
+                .description("The ratio of cache lookups that returned a cached value")
+                .register(meterRegistry);
+    }
+
+    /**
+     * This method returns the snapshot of a quiz and loads it from the database on a cache miss.
+     *
+     * @param id The id of the quiz
+     * @return The snapshot of the quiz or null if the quiz does not exist
+     */
+    public QuizSnapshot get(int id) {
+        return cache.get(id, key -> quizRepository.findById(key.intValue()).map(this::snapshot).orElse(null));
+    }
+
+    /**
+     * This method returns the snapshots of many quizzes. All quizzes that are not cached are loaded with one query.
+     *
+     * @param ids The ids of the quizzes
+     * @return The snapshots by id, quizzes that do not exist are missing
+     */
+    public Map<Integer, QuizSnapshot> getAll(Collection<Integer> ids) {
+        return cache.getAll(ids, missing -> {
+            List<Integer> missingIds = new ArrayList<>();
+            missing.forEach(missingIds::add);
+            return quizRepository.findAllWithAuthorByIdIn(missingIds).stream()
+                    .collect(Collectors.toMap(Quiz::getId, this::snapshot));
+        });
+    }
+
+    /**
+     * This method returns the snapshot of a quiz if it is cached, without ever querying the database.
+     *
+     * @param id The id of the quiz
+     * @return The snapshot of the quiz or null if it is not cached
+     */
+    public QuizSnapshot getIfPresent(int id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * This method stores the current state of a quiz right after it has been written, so the answer is compiled and
+     * the response is serialized once on the write path instead of on the next read.
+     *
+     * @param quiz The quiz that has been written
+     */
+    public void put(Quiz quiz) {
+        cache.put(quiz.getId(), snapshot(quiz));
+        version.incrementAndGet();
+    }
+
+    /**
+     * This method removes a quiz from the cache, so the next read loads the current state from the database.
+     *
+     * @param id The id of the quiz
+     */
+    public void invalidate(int id) {
+        cache.invalidate(id);
+        version.incrementAndGet();
+    }
+
+    /**
+     * This method records that quizzes were written without going through the cache, e.g. by an import.
+     */
+    public void quizzesChanged() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * This method returns a weak ETag for lists of quizzes. It changes whenever any quiz is created, updated, imported
+     * or deleted by this instance.
+     *
+     * @return The weak ETag
+     */
+    public String getListEtag() {
+        return "W/\"" + instance + "-" + version.get() + "\"";
+    }
+
+    private QuizSnapshot snapshot(Quiz quiz) {
+        return new QuizSnapshot(quiz, objectMapper);
+    }
+}
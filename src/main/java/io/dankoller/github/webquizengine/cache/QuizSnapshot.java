@@ -0,0 +1,201 @@
+package io.dankoller.github.webquizengine.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import io.dankoller.github.webquizengine.response.QuizResponse;
+import io.dankoller.github.webquizengine.service.AnswerMask;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is an immutable copy of a {@link Quiz} that is detached from the persistence context, so it can be
+ * shared between requests by the {@link QuizCache}. The correct answer is compiled into an {@link AnswerMask} once and
+ * the response is serialized once, as UTF-8 JSON and, if it is large enough to benefit, gzip compressed. A read of the
+ * quiz only writes these bytes, no response object is created and Jackson is not involved.
+ */
+@Getter
+public final class QuizSnapshot {
+    private final int id;
+    private final String title;
+    private final String text;
+    private final String authorEmail;
+    private final long answerVersion;
+    @Getter(AccessLevel.NONE)
+    private final String[] options;
+    @Getter(AccessLevel.NONE)
+    private final AnswerMask answerMask;
+    @Getter(AccessLevel.NONE)
+    private final Body jsonBody;
+    @Getter(AccessLevel.NONE)
+    private final Body gzipBody;
+
+    // Smaller responses do not get smaller by compression
+    private static final int MIN_GZIP_SIZE = 256;
+
+    public QuizSnapshot(Quiz quiz, ObjectMapper objectMapper) {
+        this.id = quiz.getId();
+        this.title = quiz.getTitle();
+        this.text = quiz.getText();
+        this.authorEmail = quiz.getAuthor() != null ? quiz.getAuthor().getEmail() : null;
+        this.options = quiz.getOptions() != null ? quiz.getOptions().clone() : null;
+        this.answerMask = AnswerMask.compile(quiz.getAnswer(), options != null ? options.length : 0);
+        this.answerVersion = answerVersion(options, quiz.getAnswer());
+        String version = id + "-" + Long.toHexString(contentHash());
+        byte[] json = serialize(objectMapper);
+        this.jsonBody = new Body(json, "\"" + version + "\"", false);
+        byte[] gzip = json.length >= MIN_GZIP_SIZE ? gzip(json) : null;
+        // Each representation has its own strong ETag
+        this.gzipBody = gzip != null && gzip.length < json.length
+                ? new Body(gzip, "\"" + version + "-gzip\"", true)
+                : null;
+    }
+
+    /**
+     * This method returns the serialized response of this quiz.
+     *
+     * @param acceptsGzip True if the client accepts a gzip compressed response
+     * @return The compressed body if the client accepts it and it is smaller, the JSON body otherwise
+     */
+    public Body getBody(boolean acceptsGzip) {
+        return acceptsGzip && gzipBody != null ? gzipBody : jsonBody;
+    }
+
+    /**
+     * This method checks if an Accept-Encoding header allows a gzip compressed response.
+     *
+     * @param acceptEncoding The value of the header or null if the request does not have it
+     * @return True if gzip is accepted
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters >= 0 ? coding.substring(0, parameters) : coding).trim();
+            // A weight of 0 means "not acceptable"
+            boolean accepted = parameters < 0
+                    || !coding.substring(parameters + 1).replace(" ", "").matches("q=0(\\.0*)?");
+            if (name.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
+    }
+
+    private byte[] serialize(ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsBytes(toResponse());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper method to compute a 64-bit FNV-1a hash of the fields of the response. The answer is not part of the
+     * response, so changing only the answer keeps the ETag.
+     *
+     * @return The hash of the content
+     */
+    private long contentHash() {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, title);
+        hash = hash(hash, text);
+        if (options != null) {
+            for (String option : options) {
+                hash = hash(hash, option);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * This method computes a 64-bit FNV-1a hash of the options and the answer of a quiz. Attempts are only comparable
+     * while both stay the same, so the {@link io.dankoller.github.webquizengine.service.QuizStatistics} count the
+     * attempts of every version separately.
+     *
+     * @param options The options of the quiz
+     * @param answer  The indices of the correct options
+     * @return The version of the options and the answer
+     */
+    public static long answerVersion(String[] options, int[] answer) {
+        long hash = 0xcbf29ce484222325L;
+        if (options != null) {
+            for (String option : options) {
+                hash = hash(hash, option);
+            }
+        }
+        hash = (hash ^ 0xfffe) * 0x100000001b3L;
+        if (answer != null) {
+            for (int index : answer) {
+                hash = (hash ^ index) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        // A separator, so moving characters between fields changes the hash
+        return (hash ^ 0xffff) * 0x100000001b3L;
+    }
+
+    /**
+     * This method checks if the answer of a user is correct.
+     *
+     * @param userAnswer The answer that the user submitted
+     * @return True if the answer is correct, false otherwise
+     */
+    public boolean isCorrectAnswer(int[] userAnswer) {
+        return answerMask.matches(userAnswer);
+    }
+
+    /**
+     * This method returns the number of options of this quiz.
+     *
+     * @return The number of options
+     */
+    public int getOptionCount() {
+        return options != null ? options.length : 0;
+    }
+
+    /**
+     * This method creates a response for this quiz. The response shares the options of the snapshot and must only be
+     * serialized, not modified.
+     *
+     * @return The quiz response
+     */
+    public QuizResponse toResponse() {
+        return new QuizResponse(id, title, text, options);
+    }
+
+    /**
+     * A serialized response with its ETag. The bytes are shared by all requests and must not be modified.
+     */
+    public record Body(byte[] bytes, String etag, boolean gzipped) {
+    }
+}
@@ -0,0 +1,84 @@
+package io.dankoller.github.webquizengine.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * This class creates the regions of the Hibernate second-level cache. Every region is a bounded Caffeine cache, so the
+ * number of entries and their time to live are set here instead of by defaults of the provider. Hibernate is configured
+ * to fail on a region that is not created here (see application.properties).
+ * <p>
+ * Entities that are written through Hibernate are updated in their region when the transaction commits, and the
+ * cached query results of a table are invalidated by the timestamps region. Rows that are written with plain JDBC
+ * bypass the cache, so only the quiz import (which inserts new rows) and the schema migration (which runs before the
+ * first read) do that for quizzes and users. The quizzes of a deleted user are deleted by the database
+ * (<code>ON DELETE CASCADE</code>), so they are evicted by the {@link
+ * io.dankoller.github.webquizengine.service.AuthoredQuizInvalidator} when the deletion commits.
+ * <p>
+ * Every application context gets its own cache manager, so contexts that run in the same JVM (e.g. tests with
+ * different configurations) neither share entries nor fail to create the regions.
+ */
+@Configuration
+@SuppressWarnings("unused")
+public class EntityCacheConfiguration {
+    public static final String QUIZ_REGION = "quiz";
+    public static final String USER_REGION = "user";
+    public static final String USER_BY_EMAIL_REGION = "user-by-email";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(@Value("${quiz.entity-cache.quiz.max-size:10000}") long quizMaxSize,
+                                           @Value("${quiz.entity-cache.user.max-size:10000}") long userMaxSize,
+                                           @Value("${quiz.entity-cache.query.max-size:10000}") long queryMaxSize,
+                                           @Value("${quiz.entity-cache.ttl:10m}") Duration ttl) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("quiz-entity-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(QUIZ_REGION, region(OptionalLong.of(quizMaxSize), ttl));
+        cacheManager.createCache(USER_REGION, region(OptionalLong.of(userMaxSize), ttl));
+        cacheManager.createCache(USER_BY_EMAIL_REGION, region(OptionalLong.of(queryMaxSize), ttl));
+        // Used by cacheable queries that do not name a region
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(OptionalLong.of(queryMaxSize), ttl));
+        // The last write of every table, one entry per table. It must never lose an entry, otherwise stale query
+        // results would be returned
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                region(OptionalLong.empty(), null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+
+    /**
+     * Helper method to configure a region. Hibernate only stores immutable copies of the entity state, so the entries
+     * are stored by reference instead of being copied on every read.
+     *
+     * @param maxSize The maximum number of entries or empty for no limit
+     * @param ttl     The time to live of an entry or null for no expiry
+     * @return The configuration of the region
+     */
+    private static CaffeineConfiguration<Object, Object> region(OptionalLong maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setMaximumSize(maxSize);
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,14 @@
+package io.dankoller.github.webquizengine.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * This class enables the task scheduler of Spring Boot, which is configured by <code>spring.task.scheduling.*</code>.
+ * It runs all periodic background work: writing the queued completions, writing the quiz and user statistics and
+ * logging the SQL events.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
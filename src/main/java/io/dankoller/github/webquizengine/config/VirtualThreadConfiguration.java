@@ -0,0 +1,41 @@
+package io.dankoller.github.webquizengine.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class lets Tomcat serve every request on its own virtual thread instead of the bounded platform thread pool.
+ * Requests that block on JDBC or BCrypt then no longer hold an operating system thread, so concurrency is limited by
+ * the connection pool (spring.datasource.hikari.maximum-pool-size) instead of the thread count.
+ * <p>
+ * The build targets Java 17, so the executor is looked up at runtime. Enabling the mode requires a Java 21 runtime,
+ * e.g. <code>./gradlew bootRun -PvirtualThreads</code>.
+ */
+@Configuration
+@ConditionalOnProperty(name = "quiz.threads.virtual", havingValue = "true")
+@SuppressWarnings("unused")
+public class VirtualThreadConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer, running on " + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+}
@@ -0,0 +1,94 @@
+package io.dankoller.github.webquizengine.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.dankoller.github.webquizengine.response.WireFormat;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.CodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/**
+ * This class adds the binary Jackson formats CBOR and Smile to the message converters of Spring MVC and the codecs of
+ * WebFlux. The object mappers are built with the same builder as the JSON object mapper, so all formats share the
+ * spring.jackson settings and write the same fields. The JSON converter stays first, so JSON remains the default.
+ */
+@Configuration
+@SuppressWarnings("unused")
+public class WireFormatConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(builder));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileObjectMapper(builder));
+    }
+
+    // Custom codecs are used before the default ones, so JSON is registered again in front of the binary formats.
+    // Otherwise a request that accepts any type would get CBOR.
+    @Bean
+    public CodecCustomizer wireFormatCodecCustomizer(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper cbor = cborObjectMapper(builder);
+        ObjectMapper smile = smileObjectMapper(builder);
+        return configurer -> {
+            CodecConfigurer.CustomCodecs codecs = configurer.customCodecs();
+            codecs.registerWithDefaultConfig(new Jackson2JsonEncoder(objectMapper));
+            codecs.registerWithDefaultConfig(new Jackson2JsonDecoder(objectMapper));
+            // Without media types the binary codecs would claim the JSON ones
+            MediaType cborType = WireFormat.CBOR.getMediaType();
+            MediaType smileType = WireFormat.SMILE.getMediaType();
+            codecs.registerWithDefaultConfig(new CborEncoder(cbor, cborType));
+            codecs.registerWithDefaultConfig(new Jackson2CborDecoder(cbor, cborType));
+            codecs.registerWithDefaultConfig(new Jackson2SmileEncoder(smile, smileType));
+            codecs.registerWithDefaultConfig(new Jackson2SmileDecoder(smile, smileType));
+        };
+    }
+
+    private static ObjectMapper cborObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new CBORFactory()).build();
+    }
+
+    private static ObjectMapper smileObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new SmileFactory()).build();
+    }
+
+    /**
+     * The CBOR encoder of Spring only encodes single values, but the HTTP writers always pass a publisher. Each value
+     * of the publisher is encoded on its own, a stream of values is written as a CBOR sequence.
+     */
+    private static final class CborEncoder extends Jackson2CborEncoder {
+        private CborEncoder(ObjectMapper mapper, MimeType... mimeTypes) {
+            super(mapper, mimeTypes);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, @Nullable MimeType mimeType,
+                                       @Nullable Map<String, Object> hints) {
+            return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+    }
+}
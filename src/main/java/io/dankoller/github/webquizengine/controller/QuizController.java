@@ -1,62 +1,169 @@
 package io.dankoller.github.webquizengine.controller;
 
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
 import io.dankoller.github.webquizengine.entity.CompletedQuiz;
-import io.dankoller.github.webquizengine.entity.Quiz;
 import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.dankoller.github.webquizengine.request.AnswerRequest;
 import io.dankoller.github.webquizengine.request.QuizRequest;
+import io.dankoller.github.webquizengine.response.AnswerResultResponse;
+import io.dankoller.github.webquizengine.response.ImportResponse;
 import io.dankoller.github.webquizengine.response.QuizResponse;
+import io.dankoller.github.webquizengine.response.QuizStatisticsResponse;
+import io.dankoller.github.webquizengine.response.SliceResponse;
+import io.dankoller.github.webquizengine.response.WireFormat;
+import io.dankoller.github.webquizengine.service.KeysetCursor;
+import io.dankoller.github.webquizengine.service.QuizExporter;
+import io.dankoller.github.webquizengine.service.QuizImporter;
 import io.dankoller.github.webquizengine.service.QuizService;
+import io.dankoller.github.webquizengine.service.UserStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @SuppressWarnings("unused")
 public class QuizController {
+    // Clients may keep quizzes but revalidate them with the ETag, shared caches must not serve them to other users
+    private static final CacheControl QUIZ_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     @Autowired
     private QuizService quizService;
+    @Autowired
+    private QuizImporter quizImporter;
+    @Autowired
+    private QuizExporter quizExporter;
+    @Autowired
+    private UserStatistics userStatistics;
 
     /**
-     * This method returns a quiz by id.
+     * This method returns a quiz by id. A JSON response is written from the bytes serialized when the quiz was cached,
+     * gzip compressed if the client accepts it. CBOR and Smile are serialized by their message converters. If the
+     * client already has the current version of the quiz, only status 304 is returned.
      *
-     * @param id The id of the quiz
+     * @param id         The id of the quiz
+     * @param webRequest The request with the accepted formats and encodings and the ETag the client has
      * @return A ResponseEntity with the quiz or an empty array if the quiz is not found
      */
     @GetMapping("/api/quizzes/{id}")
-    public ResponseEntity<?> getQuizById(@PathVariable int id) {
-        Quiz quiz = quizService.getQuizById(id);
+    public ResponseEntity<?> getQuizById(@PathVariable int id, WebRequest webRequest) {
+        QuizSnapshot quiz = quizService.getQuizById(id);
         if (quiz == null) {
             return new ResponseEntity<>("[]", HttpStatus.NOT_FOUND);
         }
-        QuizResponse response = new QuizResponse(quiz.getId(), quiz.getTitle(), quiz.getText(), quiz.getOptions());
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        WireFormat format = WireFormat.negotiate(webRequest.getHeader(HttpHeaders.ACCEPT));
+        boolean acceptsGzip = format == WireFormat.JSON
+                && QuizSnapshot.acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        QuizSnapshot.Body body = quiz.getBody(acceptsGzip);
+        String etag = format.etag(body.etag());
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(QUIZ_CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(format.getMediaType());
+        if (format != WireFormat.JSON) {
+            return response.body(quiz.toResponse());
+        }
+        if (body.gzipped()) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body.bytes());
     }
 
     /**
-     * This method returns a list of all quizzes with paging.
+     * This method returns whether the logged-in user has solved a quiz at least once.
      *
-     * @param page The page number as a query parameter
+     * @param user The logged-in user
+     * @param id   The id of the quiz
+     * @return A ResponseEntity with the id of the quiz and the result
+     */
+    @GetMapping("/api/quizzes/{id}/solved")
+    public ResponseEntity<?> hasSolvedQuiz(@AuthenticationPrincipal UserDetailsImpl user, @PathVariable int id) {
+        return new ResponseEntity<>(Map.of("id", id, "solved", userStatistics.hasSolved(user.getUsername(), id)),
+                HttpStatus.OK);
+    }
+
+    /**
+     * This method returns the solve statistics of a quiz.
+     *
+     * @param id The id of the quiz
+     * @return A ResponseEntity with the attempts, the success rate and how often each option was chosen
+     */
+    @GetMapping("/api/quizzes/{id}/stats")
+    public ResponseEntity<?> getQuizStatistics(@PathVariable int id) {
+        QuizStatisticsResponse statistics = quizService.getQuizStatistics(id);
+        if (statistics == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(statistics, HttpStatus.OK);
+    }
+
+    /**
+     * This method returns a list of all quizzes with paging. If the after parameter is present, keyset pagination is
+     * used instead and a slice without a total count is returned.
+     *
+     * The list carries a weak ETag that changes with every change of any quiz, so a client that has the current list
+     * gets status 304 without a query.
+     *
+     * @param page       The page number as a query parameter
+     * @param after      The cursor returned with the previous slice (empty for the first slice)
+     * @param webRequest The request with the ETag the client has
      * @return A ResponseEntity with a list of all quizzes
      */
     @GetMapping("/api/quizzes")
     public ResponseEntity<?> getAllQuizzes(@RequestParam(required = false, defaultValue = "0") int page,
                                            @RequestParam(required = false, defaultValue = "10") int pageSize,
-                                           @RequestParam(required = false, defaultValue = "id") String sortBy) {
-        Page<Quiz> quizzes = quizService.getAllQuizzes(page, pageSize, sortBy);
-        return new ResponseEntity<>(quizzes, HttpStatus.OK);
+                                           @RequestParam(required = false, defaultValue = "id") String sortBy,
+                                           @RequestParam(required = false) String after,
+                                           WebRequest webRequest) {
+        // Read before the query, so a change during the query is never hidden behind this ETag
+        String etag = quizService.getQuizListEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(QUIZ_CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT);
+        if (after != null) {
+            Slice<QuizResponse> quizzes = quizService.getQuizzesAfter(after, pageSize);
+            return response.body(SliceResponse.of(quizzes, KeysetCursor::of));
+        }
+        Page<QuizResponse> quizzes = quizService.getAllQuizzes(page, pageSize, sortBy);
+        return response.body(quizzes);
     }
 
     /**
-     * This method returns a list of all quizzes that the user has completed with paging.
+     * This method returns a list of all quizzes that the user has completed with paging. If the after parameter is
+     * present, keyset pagination is used instead and a slice without a total count is returned. If distinct is true,
+     * every solved quiz is returned once, newest quiz first.
      *
-     * @param user The logged-in user
-     * @param page The page number as a query parameter
+     * @param user     The logged-in user
+     * @param page     The page number as a query parameter
+     * @param after    The cursor returned with the previous slice (empty for the first slice)
+     * @param distinct True to return the distinct solved quizzes instead of every completion
      * @return A ResponseEntity with a list of all quizzes that the user has completed
      */
     @GetMapping("/api/quizzes/completed")
@@ -64,11 +171,92 @@ public class QuizController {
             @AuthenticationPrincipal UserDetailsImpl user,
             @RequestParam(required = false, defaultValue = "0") int page,
             @RequestParam(required = false, defaultValue = "10") int pageSize,
-            @RequestParam(required = false, defaultValue = "completedAt") String sortBy) {
+            @RequestParam(required = false, defaultValue = "completedAt") String sortBy,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "false") boolean distinct) {
+        if (distinct) {
+            return new ResponseEntity<>(userStatistics.getSolvedQuizzes(user.getUsername(), page, pageSize),
+                    HttpStatus.OK);
+        }
+        if (after != null) {
+            Slice<CompletedQuiz> quizzes = quizService.getCompletedQuizzesAfter(user.getUsername(), after, pageSize);
+            return new ResponseEntity<>(SliceResponse.of(quizzes, KeysetCursor::of), HttpStatus.OK);
+        }
         Page<CompletedQuiz> quizzes = quizService.getCompletedQuizzes(user.getUsername(), page, pageSize, sortBy);
         return new ResponseEntity<>(quizzes, HttpStatus.OK);
     }
 
+    /**
+     * This method returns the statistics of the logged-in user.
+     *
+     * @param user The logged-in user
+     * @return A ResponseEntity with the number of completed quizzes and the time of the last completion
+     */
+    @GetMapping("/api/quizzes/completed/stats")
+    public ResponseEntity<?> getCompletedQuizStatistics(@AuthenticationPrincipal UserDetailsImpl user) {
+        return new ResponseEntity<>(userStatistics.getStatistics(user.getUsername()), HttpStatus.OK);
+    }
+
+    /**
+     * This method returns the users with the most completed quizzes.
+     *
+     * @param limit The number of users as a query parameter
+     * @return A ResponseEntity with the users, most completions first
+     */
+    @GetMapping("/api/quizzes/leaderboard")
+    public ResponseEntity<?> getLeaderboard(@RequestParam(required = false, defaultValue = "10") int limit) {
+        return new ResponseEntity<>(userStatistics.getLeaderboard(limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method searches the title, text and options of all quizzes.
+     *
+     * @param q     The search query as a query parameter
+     * @param limit The maximum number of quizzes as a query parameter
+     * @return A ResponseEntity with the matching quizzes, best match first
+     */
+    @GetMapping("/api/quizzes/search")
+    public ResponseEntity<?> searchQuizzes(@RequestParam(required = false, defaultValue = "") String q,
+                                           @RequestParam(required = false, defaultValue = "10") int limit) {
+        return new ResponseEntity<>(quizService.searchQuizzes(q, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method exports all quizzes. The rows are streamed from the database to the client.
+     *
+     * @param format   The format of the export (ndjson or csv)
+     * @param response The response the quizzes are written to
+     * @return A task that writes the quizzes
+     */
+    @GetMapping("/api/quizzes/export")
+    public WebAsyncTask<Void> exportQuizzes(@RequestParam(required = false, defaultValue = "ndjson") String format,
+                                            HttpServletResponse response) {
+        QuizExporter.Format exportFormat = QuizExporter.Format.of(format);
+        return quizExporter.runAsync(exportFormat, response, out -> quizExporter.exportQuizzes(exportFormat, out));
+    }
+
+    /**
+     * This method exports the quizzes that the user has completed, oldest first. The rows are streamed from the
+     * database to the client.
+     *
+     * @param user     The logged-in user
+     * @param format   The format of the export (ndjson or csv)
+     * @param since    Only quizzes completed at or after this time (ISO date-time) are exported
+     * @param response The response the completed quizzes are written to
+     * @return A task that writes the completed quizzes
+     */
+    @GetMapping("/api/quizzes/completed/export")
+    public WebAsyncTask<Void> exportCompletedQuizzes(
+            @AuthenticationPrincipal UserDetailsImpl user,
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            HttpServletResponse response) {
+        QuizExporter.Format exportFormat = QuizExporter.Format.of(format);
+        String email = user.getUsername();
+        return quizExporter.runAsync(exportFormat, response,
+                out -> quizExporter.exportCompletedQuizzes(email, since, exportFormat, out));
+    }
+
     /**
      * This method allows the user to create a new quiz.
      *
@@ -80,6 +268,26 @@ public class QuizController {
     public ResponseEntity<?> postQuiz(@AuthenticationPrincipal UserDetailsImpl author,
                                       @RequestBody @Valid QuizRequest quizRequest) {
         QuizResponse response = quizService.postQuiz(author.getUsername(), quizRequest);
+        if (response == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * This method allows the user to create many quizzes at once from a JSON array or newline delimited JSON objects.
+     * The body is streamed, invalid items are skipped and reported.
+     *
+     * @param author The logged-in user
+     * @param body   The request body
+     * @return A ResponseEntity with the number of imported quizzes and the errors of the skipped items
+     * @throws IOException If the body could not be read
+     */
+    @PostMapping(value = "/api/quizzes/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importQuizzes(@AuthenticationPrincipal UserDetailsImpl author,
+                                           InputStream body) throws IOException {
+        ImportResponse response = quizImporter.importQuizzes(author.getUsername(), body);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
@@ -100,6 +308,20 @@ public class QuizController {
         return quizService.validateAnswer(user.getUsername(), id, userAnswer);
     }
 
+    /**
+     * This method allows the user to solve many quizzes in one request.
+     *
+     * @param user    The logged-in user
+     * @param answers The answers request body, a list of quiz ids and answers
+     * @return A ResponseEntity with the result of every answer in the order of the request
+     */
+    @PostMapping("/api/quizzes/solve")
+    public ResponseEntity<?> solveQuizzes(@AuthenticationPrincipal UserDetailsImpl user,
+                                          @RequestBody List<AnswerRequest> answers) {
+        List<AnswerResultResponse> results = quizService.validateAnswers(user.getUsername(), answers);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
     /**
      * This method allows the user to delete a quiz.
      *
@@ -126,4 +348,14 @@ public class QuizController {
                                        @PathVariable int id) {
         return quizService.patchQuiz(user.getUsername(), id, quizRequest);
     }
+
+    /**
+     * Helper method to answer a request whose ETag matches. The status and the ETag have already been set by
+     * {@link WebRequest#checkNotModified(String)}, the cache control is repeated as required for status 304.
+     *
+     * @return A ResponseEntity without a body
+     */
+    private static ResponseEntity<?> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(QUIZ_CACHE_CONTROL).build();
+    }
 }
@@ -0,0 +1,40 @@
+package io.dankoller.github.webquizengine.controller;
+
+import io.dankoller.github.webquizengine.auth.TokenProvider;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.dankoller.github.webquizengine.response.TokenResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "quiz.auth.token.enabled", havingValue = "true")
+@SuppressWarnings("unused")
+public class TokenController {
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    /**
+     * This method exchanges the credentials of the user (sent via HTTP Basic) for a bearer token. A bearer token is
+     * not accepted, otherwise a stolen token could be renewed forever.
+     *
+     * @param authentication The authentication of the logged-in user
+     * @return A ResponseEntity with the token or 401 if the user was authenticated with a token
+     */
+    @PostMapping("/api/login")
+    public ResponseEntity<?> login(Authentication authentication) {
+        if (authentication instanceof PreAuthenticatedAuthenticationToken
+                || !(authentication.getPrincipal() instanceof UserDetailsImpl user)) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+        TokenResponse response = tokenProvider.issue(user.getId(), user.getUsername());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+}
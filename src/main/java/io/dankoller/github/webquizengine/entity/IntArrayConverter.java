@@ -0,0 +1,55 @@
+package io.dankoller.github.webquizengine.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * This class stores an int array as a comma separated list (e.g. "0,2") in a text column, so it can be read without
+ * Java deserialization and inspected with plain SQL. An empty array is stored as an empty string.
+ */
+@Converter
+public class IntArrayConverter implements AttributeConverter<int[], String> {
+
+    @Override
+    public String convertToDatabaseColumn(int[] attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(attribute.length * 3);
+        for (int i = 0; i < attribute.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(attribute[i]);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int[] convertToEntityAttribute(String dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        if (dbData.isEmpty()) {
+            return new int[0];
+        }
+        // Count the elements first, so the array is allocated once
+        int count = 1;
+        for (int i = 0; i < dbData.length(); i++) {
+            if (dbData.charAt(i) == ',') {
+                count++;
+            }
+        }
+        int[] values = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = dbData.indexOf(',', start);
+            if (end < 0) {
+                end = dbData.length();
+            }
+            values[i] = Integer.parseInt(dbData, start, end, 10);
+            start = end + 1;
+        }
+        return values;
+    }
+}
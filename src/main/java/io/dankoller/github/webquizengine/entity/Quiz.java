@@ -1,10 +1,13 @@
 package io.dankoller.github.webquizengine.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.dankoller.github.webquizengine.config.EntityCacheConfiguration;
 import io.dankoller.github.webquizengine.entity.user.User;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -14,6 +17,7 @@ import javax.persistence.*;
  * This class represents a quiz. Completed quizzes are stored in the CompletedQuiz class.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfiguration.QUIZ_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -26,9 +30,11 @@ public class Quiz {
     private String title;
     @Column
     private String text;
-    @Column
+    @Column(name = "options_json", length = 4096)
+    @Convert(converter = StringArrayConverter.class)
     private String[] options;
-    @Column
+    @Column(name = "answer_indices", length = 1024)
+    @Convert(converter = IntArrayConverter.class)
     @JsonIgnore
     private int[] answer;
     @ManyToOne
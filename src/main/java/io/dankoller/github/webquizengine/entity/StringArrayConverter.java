@@ -0,0 +1,40 @@
+package io.dankoller.github.webquizengine.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * This class stores a String array as a JSON array in a text column, so it can be read without Java deserialization
+ * and inspected with plain SQL.
+ */
+@Converter
+public class StringArrayConverter implements AttributeConverter<String[], String> {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Override
+    public String convertToDatabaseColumn(String[] attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(attribute);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not convert the array to JSON", e);
+        }
+    }
+
+    @Override
+    public String[] convertToEntityAttribute(String dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readValue(dbData, String[].class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not convert the JSON to an array", e);
+        }
+    }
+}
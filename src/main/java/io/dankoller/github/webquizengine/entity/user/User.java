@@ -1,20 +1,30 @@
 package io.dankoller.github.webquizengine.entity.user;
 
+import io.dankoller.github.webquizengine.auth.CredentialCacheInvalidator;
+import io.dankoller.github.webquizengine.config.EntityCacheConfiguration;
+import io.dankoller.github.webquizengine.service.AuthoredQuizInvalidator;
+import io.dankoller.github.webquizengine.service.UserStatisticsInvalidator;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotEmpty;
+import java.util.Locale;
 
 /**
  * This class represents a user. It is used for authentication and authorization.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfiguration.USER_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
+@EntityListeners({CredentialCacheInvalidator.class, UserStatisticsInvalidator.class, AuthoredQuizInvalidator.class})
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,6 +34,9 @@ public class User {
     @Email
     private String email;
     @Column
+    @Setter(AccessLevel.NONE)
+    private String normalizedEmail; // The lower-cased email, unique and indexed (see SchemaMigration)
+    @Column
     @NotEmpty
     private String password;
 
@@ -32,4 +45,13 @@ public class User {
         this.email = email;
         this.password = password;
     }
+
+    /**
+     * This method keeps the normalized email in sync with the email whenever the user is written.
+     */
+    @PrePersist
+    @PreUpdate
+    private void normalizeEmail() {
+        this.normalizedEmail = email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
 }
@@ -10,17 +10,23 @@ import java.util.List;
  * This class implements the UserDetails interface and is used by Spring Security.
  */
 public class UserDetailsImpl implements UserDetails {
+    private final long id;
     private final String email;
     private final String password;
     private final List<GrantedAuthority> authorities;
 
     public UserDetailsImpl(User user) {
+        this.id = user.getId();
         this.email = user.getEmail();
         this.password = user.getPassword();
         // Every user has the basic role of ROLE_USER
         this.authorities = List.of(() -> "ROLE_USER");
     }
 
+    public long getId() {
+        return id;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
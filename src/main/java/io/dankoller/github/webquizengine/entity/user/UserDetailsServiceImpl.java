@@ -6,6 +6,8 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Locale;
+
 /**
  * This class implements the UserDetailsService interface and is used by Spring Security.
  */
@@ -23,4 +25,20 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         }
         return new UserDetailsImpl(user);
     }
+
+    /**
+     * This method loads the user a bearer token was issued for. The user is read by id, which is usually answered by
+     * the second-level cache, and must still have the email of the token. A token of a deleted user is therefore
+     * rejected, even if another user has registered with the same email since.
+     *
+     * @param id    The id of the user in the token
+     * @param email The email of the user in the token
+     * @return The user or null if the user no longer exists
+     */
+    public UserDetailsImpl loadUserById(long id, String email) {
+        return userRepository.findById(id)
+                .filter(user -> user.getNormalizedEmail().equals(email.toLowerCase(Locale.ROOT)))
+                .map(UserDetailsImpl::new)
+                .orElse(null);
+    }
 }
@@ -0,0 +1,74 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This endpoint (<code>/actuator/entitycache</code>) lists the regions of the Hibernate second-level cache with their
+ * size and how often they were hit. The same counters are published as <code>hibernate.second.level.cache.*</code>
+ * and <code>hibernate.cache.query.*</code> metrics.
+ */
+@Component
+@Endpoint(id = "entitycache")
+public class EntityCacheEndpoint {
+    private final Statistics statistics;
+    private final CacheManager entityCacheManager;
+
+    public EntityCacheEndpoint(EntityManagerFactory entityManagerFactory, CacheManager entityCacheManager) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.entityCacheManager = entityCacheManager;
+    }
+
+    /**
+     * This method returns the totals of the entity and query caches and the statistics of every region.
+     *
+     * @return The statistics of the second-level cache
+     */
+    @ReadOperation
+    public EntityCacheDescriptor regions() {
+        List<RegionSummary> regions = new ArrayList<>();
+        for (String name : entityCacheManager.getCacheNames()) {
+            com.github.benmanes.caffeine.cache.Cache<?, ?> cache = entityCacheManager.getCache(name)
+                    .unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+            Long maxSize = cache.policy().eviction().map(Policy.Eviction::getMaximum).orElse(null);
+            // The timestamps region is not tracked per region
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            long hits = region != null ? region.getHitCount() : statistics.getUpdateTimestampsCacheHitCount();
+            long misses = region != null ? region.getMissCount() : statistics.getUpdateTimestampsCacheMissCount();
+            long puts = region != null ? region.getPutCount() : statistics.getUpdateTimestampsCachePutCount();
+            regions.add(new RegionSummary(name, cache.estimatedSize(), maxSize, hits, misses, puts,
+                    hits + misses > 0 ? (double) hits / (hits + misses) : 0));
+        }
+        return new EntityCacheDescriptor(statistics.isStatisticsEnabled(),
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(), regions);
+    }
+
+    /**
+     * The response of the endpoint.
+     */
+    public record EntityCacheDescriptor(boolean statisticsEnabled,
+                                        long entityHits,
+                                        long entityMisses,
+                                        long queryHits,
+                                        long queryMisses,
+                                        List<RegionSummary> regions) {
+    }
+
+    /**
+     * The statistics of one region. The maximum size is null for regions without a limit.
+     */
+    public record RegionSummary(String name, long size, Long maxSize, long hits, long misses, long puts,
+                                double hitRatio) {
+    }
+}
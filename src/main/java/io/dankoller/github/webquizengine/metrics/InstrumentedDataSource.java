@@ -0,0 +1,100 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * This class wraps the data source, so every statement that is executed through it is counted by the
+ * {@link SqlStatementCounter} and timed by the {@link SqlStatementMonitor}. It covers Hibernate as well as plain JDBC
+ * access. The time of a query is the time until the result set is returned, reading the rows is not included.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final SqlStatementMonitor monitor;
+
+    public InstrumentedDataSource(DataSource targetDataSource, SqlStatementMonitor monitor) {
+        super(targetDataSource);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && STATEMENT_FACTORIES.contains(method.getName())) {
+                        // Prepared statements and calls are created with their SQL, plain statements get it later
+                        String shape = args != null && args.length > 0 && args[0] instanceof String sql
+                                ? monitor.shapeOf(sql)
+                                : null;
+                        return wrap(statement, method.getReturnType(), shape);
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrap(Statement statement, Class<?> type, String preparedShape) {
+        // The shape of the first statement added to the batch of a plain statement
+        String[] batchShape = new String[1];
+        return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (preparedShape == null && name.equals("addBatch") && batchShape[0] == null) {
+                        batchShape[0] = monitor.shapeOf((String) args[0]);
+                    } else if (preparedShape == null && name.equals("clearBatch")) {
+                        batchShape[0] = null;
+                    }
+                    if (!EXECUTE_METHODS.contains(name)) {
+                        return invoke(statement, method, args);
+                    }
+
+                    SqlStatementCounter.increment();
+                    String shape;
+                    if (preparedShape != null) {
+                        shape = preparedShape;
+                    } else if (args != null && args.length > 0 && args[0] instanceof String sql) {
+                        shape = monitor.shapeOf(sql);
+                    } else {
+                        shape = batchShape[0] != null ? batchShape[0] : SqlStatementMonitor.OTHER_SHAPE;
+                        batchShape[0] = null;
+                    }
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = invoke(statement, method, args);
+                        failed = false;
+                        return result;
+                    } finally {
+                        monitor.record(shape, System.nanoTime() - start, failed);
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
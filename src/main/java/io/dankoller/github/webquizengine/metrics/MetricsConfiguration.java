@@ -0,0 +1,38 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * This class enables the <code>@Timed</code> annotation on the services and counts and times the SQL statements of
+ * all data sources.
+ */
+@Configuration
+@SuppressWarnings("unused")
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(ObjectProvider<SqlStatementMonitor> monitor) {
+        // The monitor is resolved when the first data source is created, it only depends on properties
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource(dataSource, monitor.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * This filter records the number of SQL statements of every request as the <code>quiz.http.sql.statements</code>
+ * distribution (tagged like <code>http.server.requests</code>) and logs requests that take longer than the
+ * configured threshold. It runs before the security filters, so the user lookup of the authentication is included.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long slowRequestThresholdNanos;
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry,
+                                @Value("${quiz.metrics.slow-request-threshold:500ms}") Duration slowRequestThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestThresholdNanos = slowRequestThreshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        SqlStatementCounter.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int statements = SqlStatementCounter.end();
+            long duration = System.nanoTime() - start;
+            // The pattern of the handler (e.g. /api/quizzes/{id}) keeps the number of tags bounded
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+            DistributionSummary.builder("quiz.http.sql.statements")
+                    .description("The number of SQL statements executed by a request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(statements);
+
+            if (duration > slowRequestThresholdNanos) {
+                log.warn("Slow request: {} {} ({}) took {} ms with {} SQL statements, status {}",
+                        request.getMethod(), request.getRequestURI(), uri, duration / 1_000_000, statements,
+                        response.getStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.dankoller.github.webquizengine.metrics;
+
+/**
+ * This class counts the SQL statements executed by the current thread between {@link #begin()} and {@link #end()},
+ * e.g. during one request. Statements outside of a counted section are ignored.
+ */
+public final class SqlStatementCounter {
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * This method starts counting the statements of the current thread.
+     */
+    public static void begin() {
+        COUNT.set(new int[1]);
+    }
+
+    /**
+     * This method stops counting the statements of the current thread.
+     *
+     * @return The number of statements executed since {@link #begin()}
+     */
+    public static int end() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * This method counts one executed statement.
+     */
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * This class records the execution time of the SQL statements per statement shape, i.e. the SQL with literals and
+ * whitespace normalized, so the same query with different values is counted once. Statements that are slower than the
+ * threshold and a sampled fraction of the others are queued and logged as JSON by the shared {@link TaskScheduler}, so
+ * the executing thread never waits for the log. Only the shape is logged, never the values of the parameters.
+ */
+@Component
+public class SqlStatementMonitor implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger("io.dankoller.github.webquizengine.sql");
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // Statements that are generated with values inline could create a new shape per execution
+    private static final int MAX_SHAPES = 1000;
+    private static final int MAX_SHAPE_LENGTH = 2000;
+    static final String OTHER_SHAPE = "<other>";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Duration LOG_INTERVAL = Duration.ofMillis(100);
+
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final Duration slowThreshold;
+    private final BlockingQueue<Runnable> logEvents;
+    private final ScheduledFuture<?> logTask;
+    private final LongAdder droppedLogEvents = new LongAdder();
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStatistics> statistics = new ConcurrentHashMap<>();
+
+    // Without a scheduler the events are only logged when the monitor is destroyed
+    public SqlStatementMonitor(TaskScheduler taskScheduler,
+                               @Value("${quiz.sql.slow-threshold:100ms}") Duration slowThreshold,
+                               @Value("${quiz.sql.log-sample-rate:0.0}") double sampleRate,
+                               @Value("${quiz.sql.log-queue-capacity:10000}") int logQueueCapacity) {
+        this.slowThreshold = slowThreshold;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.logEvents = new ArrayBlockingQueue<>(logQueueCapacity);
+        this.logTask = taskScheduler != null ? taskScheduler.scheduleWithFixedDelay(this::writeLogEvents, LOG_INTERVAL)
+                : null;
+    }
+
+    /**
+     * This method returns the shape of a SQL statement: string and number literals are replaced by <code>?</code>,
+     * lists of parameters by a single one and whitespace is collapsed.
+     *
+     * @param sql The SQL statement
+     * @return The shape of the statement
+     */
+    public String shapeOf(String sql) {
+        if (sql == null) {
+            return OTHER_SHAPE;
+        }
+        String shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = normalize(sql);
+        if (shapes.size() < MAX_SHAPES) {
+            shapes.put(sql, shape);
+        }
+        return shape;
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) + "..." : shape;
+    }
+
+    /**
+     * This method records one execution of a statement and queues it for the log if it is slow or sampled.
+     *
+     * @param shape         The shape of the statement
+     * @param durationNanos The execution time in nanoseconds
+     * @param failed        True if the statement threw an exception
+     */
+    public void record(String shape, long durationNanos, boolean failed) {
+        ShapeStatistics shapeStatistics = statistics.get(shape);
+        if (shapeStatistics == null) {
+            String key = statistics.size() < MAX_SHAPES ? shape : OTHER_SHAPE;
+            shapeStatistics = statistics.computeIfAbsent(key, ShapeStatistics::new);
+        }
+        shapeStatistics.record(durationNanos, failed);
+
+        if (durationNanos >= slowThresholdNanos) {
+            queueLogEvent("slow", shape, durationNanos, failed);
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            queueLogEvent("sampled", shape, durationNanos, failed);
+        }
+    }
+
+    private void queueLogEvent(String reason, String shape, long durationNanos, boolean failed) {
+        // The values are taken on the executing thread, the formatting and writing is done by the log thread
+        String thread = Thread.currentThread().getName();
+        Instant timestamp = Instant.now();
+        // Events that do not fit into the queue are dropped instead of slowing down the statements
+        boolean queued = logEvents.offer(() -> {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("event", "sql");
+            event.put("reason", reason);
+            event.put("timestamp", timestamp.toString());
+            event.put("thread", thread);
+            event.put("durationMs", durationNanos / 1_000_000.0);
+            event.put("failed", failed);
+            event.put("shape", shape);
+            try {
+                String json = JSON.writeValueAsString(event);
+                if ("slow".equals(reason)) {
+                    log.warn(json);
+                } else {
+                    log.info(json);
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Could not write a SQL log event", e);
+            }
+        });
+        if (!queued) {
+            droppedLogEvents.increment();
+        }
+    }
+
+    /**
+     * Helper method run by the scheduler to write the queued log events.
+     */
+    private synchronized void writeLogEvents() {
+        Runnable event;
+        while ((event = logEvents.poll()) != null) {
+            event.run();
+        }
+    }
+
+    /**
+     * This method returns the statement shapes with the highest execution times.
+     *
+     * @param limit  The maximum number of shapes
+     * @param sortBy The time to sort by
+     * @return The shapes, slowest first
+     */
+    public List<ShapeSummary> getSlowestShapes(int limit, SortBy sortBy) {
+        return statistics.values().stream()
+                .map(ShapeStatistics::summarize)
+                .sorted(sortBy.comparator.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * This method discards the recorded execution times.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getDroppedLogEvents() {
+        return droppedLogEvents.sum();
+    }
+
+    @Override
+    public void destroy() {
+        if (logTask != null) {
+            logTask.cancel(false);
+        }
+        // Write the events that are still queued
+        writeLogEvents();
+    }
+
+    /**
+     * This enum contains the times the shapes can be sorted by.
+     */
+    public enum SortBy {
+        TOTAL(Comparator.comparingDouble(ShapeSummary::totalMs)),
+        MEAN(Comparator.comparingDouble(ShapeSummary::meanMs)),
+        MAX(Comparator.comparingDouble(ShapeSummary::maxMs));
+
+        private final Comparator<ShapeSummary> comparator;
+
+        SortBy(Comparator<ShapeSummary> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /**
+     * The execution times of one statement shape.
+     */
+    public record ShapeSummary(String shape, long count, long errors, double totalMs, double meanMs, double maxMs) {
+    }
+
+    private static final class ShapeStatistics {
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        private ShapeStatistics(String shape) {
+            this.shape = shape;
+        }
+
+        private void record(long durationNanos, boolean failed) {
+            count.increment();
+            totalNanos.add(durationNanos);
+            maxNanos.accumulate(durationNanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        private ShapeSummary summarize() {
+            long executions = count.sum();
+            double totalMs = totalNanos.sum() / 1_000_000.0;
+            return new ShapeSummary(shape, executions, errors.sum(), totalMs,
+                    executions > 0 ? totalMs / executions : 0, maxNanos.get() / 1_000_000.0);
+        }
+    }
+}
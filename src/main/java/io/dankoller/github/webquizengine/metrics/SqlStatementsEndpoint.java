@@ -0,0 +1,65 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This endpoint (<code>/actuator/sqlstatements</code>) lists the slowest SQL statement shapes recorded by the
+ * {@link SqlStatementMonitor}.
+ */
+@Component
+@Endpoint(id = "sqlstatements")
+public class SqlStatementsEndpoint {
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final SqlStatementMonitor monitor;
+
+    public SqlStatementsEndpoint(SqlStatementMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * This method returns the slowest statement shapes.
+     *
+     * @param limit  The maximum number of shapes, 10 by default
+     * @param sortBy The time to sort by: total (default), mean or max
+     * @return The settings of the log and the slowest shapes
+     */
+    @ReadOperation
+    public SqlStatementsDescriptor statements(@Nullable Integer limit, @Nullable String sortBy) {
+        SqlStatementMonitor.SortBy order;
+        try {
+            order = sortBy != null ? SqlStatementMonitor.SortBy.valueOf(sortBy.toUpperCase(Locale.ROOT))
+                    : SqlStatementMonitor.SortBy.TOTAL;
+        } catch (IllegalArgumentException e) {
+            order = SqlStatementMonitor.SortBy.TOTAL;
+        }
+        return new SqlStatementsDescriptor(monitor.getSlowThreshold(), monitor.getSampleRate(),
+                monitor.getDroppedLogEvents(),
+                monitor.getSlowestShapes(limit != null && limit > 0 ? limit : DEFAULT_LIMIT, order));
+    }
+
+    /**
+     * This method discards the recorded execution times, e.g. before a load test.
+     */
+    @DeleteOperation
+    public void reset() {
+        monitor.reset();
+    }
+
+    /**
+     * The response of the endpoint.
+     */
+    public record SqlStatementsDescriptor(Duration slowThreshold,
+                                          double logSampleRate,
+                                          long droppedLogEvents,
+                                          List<SqlStatementMonitor.ShapeSummary> shapes) {
+    }
+}
@@ -4,13 +4,29 @@ import io.dankoller.github.webquizengine.entity.CompletedQuiz;
 import io.dankoller.github.webquizengine.entity.user.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+
 /**
  * This interface is used to access the completed quizzes in the database.
  */
 @Repository
 public interface CompletedQuizRepository extends PagingAndSortingRepository<CompletedQuiz, Integer> {
     Page<CompletedQuiz> findAllByUser(User user, Pageable pageable);
+
+    // Keyset pagination (most recent first), slices are read without a count query
+    Slice<CompletedQuiz> findAllByUserOrderByCompletedAtDescCompletionIdDesc(User user, Pageable pageable);
+
+    @Query("SELECT c FROM CompletedQuiz c WHERE c.user = :user " +
+            "AND (c.completedAt < :completedAt OR (c.completedAt = :completedAt AND c.completionId < :completionId)) " +
+            "ORDER BY c.completedAt DESC, c.completionId DESC")
+    Slice<CompletedQuiz> findAllByUserAfter(@Param("user") User user,
+                                            @Param("completedAt") LocalDateTime completedAt,
+                                            @Param("completionId") int completionId,
+                                            Pageable pageable);
 }
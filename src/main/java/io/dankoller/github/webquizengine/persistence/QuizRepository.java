@@ -1,9 +1,16 @@
 package io.dankoller.github.webquizengine.persistence;
 
 import io.dankoller.github.webquizengine.entity.Quiz;
+import io.dankoller.github.webquizengine.response.QuizResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +22,22 @@ public interface QuizRepository extends PagingAndSortingRepository<Quiz, Integer
     Optional<Quiz> findById(int id);
 
     List<Quiz> findAll();
+
+    // The list endpoints only select the columns of the response instead of hydrating the entities
+    String SELECT_RESPONSE = "SELECT new io.dankoller.github.webquizengine.response.QuizResponse(" +
+            "q.id, q.title, q.text, q.options) FROM Quiz q";
+
+    @Query(value = SELECT_RESPONSE, countQuery = "SELECT COUNT(q) FROM Quiz q")
+    Page<QuizResponse> findAllResponses(Pageable pageable);
+
+    // Keyset pagination (newest first), slices are read without a count query
+    @Query(SELECT_RESPONSE + " ORDER BY q.id DESC")
+    Slice<QuizResponse> findResponsesOrderByIdDesc(Pageable pageable);
+
+    @Query(SELECT_RESPONSE + " WHERE q.id < :id ORDER BY q.id DESC")
+    Slice<QuizResponse> findResponsesBeforeOrderByIdDesc(@Param("id") int id, Pageable pageable);
+
+    // Loads many quizzes in one IN query, the authors are joined instead of being selected one by one
+    @Query("SELECT q FROM Quiz q LEFT JOIN FETCH q.author WHERE q.id IN :ids")
+    List<Quiz> findAllWithAuthorByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,133 @@
+package io.dankoller.github.webquizengine.persistence;
+
+import io.dankoller.github.webquizengine.entity.IntArrayConverter;
+import io.dankoller.github.webquizengine.entity.StringArrayConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class verifies the indexes the lookups rely on and migrates existing data when the application starts. It runs
+ * after Hibernate has updated the schema and before the web server accepts requests. All statements are idempotent.
+ */
+@Component
+public class SchemaMigration {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigration.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringArrayConverter optionsConverter = new StringArrayConverter();
+    private final IntArrayConverter answerConverter = new IntArrayConverter();
+
+    // The EntityManagerFactory is injected, so Hibernate has created or updated the tables before the migration runs
+    public SchemaMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        // Users are looked up by their lower-cased email on every authenticated request
+        jdbcTemplate.execute("ALTER TABLE user ADD COLUMN IF NOT EXISTS normalized_email VARCHAR(255)");
+        int normalized = jdbcTemplate.update(
+                "UPDATE user SET normalized_email = LOWER(email) WHERE normalized_email IS NULL AND email IS NOT NULL");
+        if (normalized > 0) {
+            log.info("Normalized the email of {} users", normalized);
+        }
+        jdbcTemplate.execute(
+                "CREATE UNIQUE INDEX IF NOT EXISTS uk_user_normalized_email ON user (normalized_email)");
+
+        // Completed quizzes are listed per user, most recent first
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_completed_quiz_user_completed_at " +
+                "ON completed_quiz (user_id, completed_at)");
+
+        // Written periodically by the UserStatistics
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_statistics (" +
+                "user_id BIGINT PRIMARY KEY REFERENCES user (id) ON DELETE CASCADE, " +
+                "completions BIGINT NOT NULL, " +
+                "last_completed_at TIMESTAMP)");
+        jdbcTemplate.execute("ALTER TABLE user_statistics ADD COLUMN IF NOT EXISTS distinct_completions BIGINT");
+
+        // Written periodically by the QuizStatistics, the option counts are stored as a comma separated list
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS quiz_statistics (" +
+                "quiz_id INTEGER PRIMARY KEY REFERENCES quiz (id) ON DELETE CASCADE, " +
+                "attempts BIGINT NOT NULL, " +
+                "successes BIGINT NOT NULL, " +
+                "option_counts VARCHAR(4096) NOT NULL)");
+
+        migrateSerializedQuizArrays();
+    }
+
+    /**
+     * Helper method to move the options and answers that older versions stored as serialized Java arrays into the
+     * options_json and answer_indices columns. The old columns are dropped afterwards, so this only runs once.
+     */
+    private void migrateSerializedQuizArrays() {
+        Integer legacyColumns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_NAME = 'QUIZ' AND COLUMN_NAME IN ('OPTIONS', 'ANSWER')", Integer.class);
+        if (legacyColumns == null || legacyColumns != 2) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int[] migrated = {0};
+        jdbcTemplate.query("SELECT id, options, answer FROM quiz WHERE options_json IS NULL", resultSet -> {
+            String[] options = (String[]) deserialize(resultSet.getBytes("options"));
+            int[] answer = (int[]) deserialize(resultSet.getBytes("answer"));
+            batch.add(new Object[]{
+                    optionsConverter.convertToDatabaseColumn(options),
+                    answerConverter.convertToDatabaseColumn(answer),
+                    resultSet.getInt("id")});
+            if (batch.size() == BATCH_SIZE) {
+                migrated[0] += writeQuizArrays(batch);
+            }
+        });
+        migrated[0] += writeQuizArrays(batch);
+
+        jdbcTemplate.execute("ALTER TABLE quiz DROP COLUMN options");
+        jdbcTemplate.execute("ALTER TABLE quiz DROP COLUMN answer");
+        log.info("Migrated the options and answers of {} quizzes", migrated[0]);
+    }
+
+    private int writeQuizArrays(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate("UPDATE quiz SET options_json = ?, answer_indices = ? WHERE id = ?", batch);
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    /**
+     * Helper method to read a serialized array. Only String and int arrays are accepted.
+     *
+     * @param bytes The serialized array
+     * @return The array or null
+     */
+    private static Object deserialize(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(info -> {
+                Class<?> type = info.serialClass();
+                return type == null || type == String[].class || type == String.class || type == int[].class
+                        ? ObjectInputFilter.Status.ALLOWED
+                        : ObjectInputFilter.Status.REJECTED;
+            });
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Could not read a serialized quiz column", e);
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package io.dankoller.github.webquizengine.persistence;
 
+import io.dankoller.github.webquizengine.config.EntityCacheConfiguration;
 import io.dankoller.github.webquizengine.entity.user.User;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Locale;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
 
 /**
  * This interface is used to access the users in the database.
  */
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
-    User findByEmailIgnoreCase(String email);
+    // The ids of the results are cached, the users themselves are read from the user region
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = EntityCacheConfiguration.USER_BY_EMAIL_REGION)
+    })
+    User findByNormalizedEmail(String normalizedEmail);
+
+    // Looks up the indexed normalized email instead of comparing upper(email) on every row
+    default User findByEmailIgnoreCase(String email) {
+        return email != null ? findByNormalizedEmail(email.toLowerCase(Locale.ROOT)) : null;
+    }
 
     List<User> findAll();
 }
@@ -0,0 +1,382 @@
+package io.dankoller.github.webquizengine.reactive;
+
+import io.dankoller.github.webquizengine.cache.QuizCache;
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
+import io.dankoller.github.webquizengine.request.AnswerRequest;
+import io.dankoller.github.webquizengine.request.QuizRequest;
+import io.dankoller.github.webquizengine.response.SliceResponse;
+import io.dankoller.github.webquizengine.response.WireFormat;
+import io.dankoller.github.webquizengine.service.KeysetCursor;
+import io.dankoller.github.webquizengine.service.QuizService;
+import io.dankoller.github.webquizengine.service.UserStatistics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * This class handles the quiz endpoints of the reactive variant of the API. Validation and grading are delegated to
+ * the {@link QuizService}, so both stacks answer the same requests in the same way. Calls that may block run on the
+ * scheduler for blocking calls, quizzes that are cached are served directly on the event loop.
+ */
+@Component
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class QuizHandler {
+    private static final ParameterizedTypeReference<Map<String, int[]>> ANSWER_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<AnswerRequest>> ANSWERS_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+    // Clients may keep quizzes but revalidate them with the ETag, shared caches must not serve them to other users
+    private static final CacheControl QUIZ_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private final QuizService quizService;
+    private final QuizCache quizCache;
+    private final UserStatistics userStatistics;
+    private final Validator validator;
+    private final Scheduler jdbcScheduler;
+
+    public QuizHandler(QuizService quizService,
+                       QuizCache quizCache,
+                       UserStatistics userStatistics,
+                       Validator validator,
+                       Scheduler jdbcScheduler) {
+        this.quizService = quizService;
+        this.quizCache = quizCache;
+        this.userStatistics = userStatistics;
+        this.validator = validator;
+        this.jdbcScheduler = jdbcScheduler;
+    }
+
+    /**
+     * This method returns a quiz by id. A JSON response is written from the bytes serialized when the quiz was cached,
+     * gzip compressed if the client accepts it. CBOR and Smile are serialized by their encoders. If the client already
+     * has the current version of the quiz, only status 304 is returned.
+     *
+     * @param request The request with the id of the quiz
+     * @return A response with the quiz or an empty array if the quiz is not found
+     */
+    public Mono<ServerResponse> getQuizById(ServerRequest request) {
+        int id = pathId(request);
+        WireFormat format = acceptedFormat(request);
+        boolean acceptsGzip = format == WireFormat.JSON
+                && QuizSnapshot.acceptsGzip(request.headers().firstHeader(HttpHeaders.ACCEPT_ENCODING));
+        QuizSnapshot cached = quizCache.getIfPresent(id);
+        Mono<QuizSnapshot> quiz = cached != null ? Mono.just(cached) : blocking(() -> quizService.getQuizById(id));
+        return quiz
+                .flatMap(snapshot -> {
+                    QuizSnapshot.Body body = snapshot.getBody(acceptsGzip);
+                    String etag = format.etag(body.etag());
+                    return request.checkNotModified(etag).switchIfEmpty(Mono.defer(() -> {
+                        ServerResponse.BodyBuilder response = ServerResponse.ok()
+                                .eTag(etag)
+                                .cacheControl(QUIZ_CACHE_CONTROL)
+                                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                                .contentType(format.getMediaType());
+                        if (format != WireFormat.JSON) {
+                            return response.bodyValue(snapshot.toResponse());
+                        }
+                        if (body.gzipped()) {
+                            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+                        }
+                        return response.bodyValue(body.bytes());
+                    }));
+                })
+                .switchIfEmpty(ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue("[]"));
+    }
+
+    /**
+     * This method returns whether the logged-in user has solved a quiz at least once.
+     *
+     * @param request The request of the logged-in user with the id of the quiz
+     * @return A response with the id of the quiz and the result
+     */
+    public Mono<ServerResponse> hasSolvedQuiz(ServerRequest request) {
+        int id = pathId(request);
+        return request.principal().map(Principal::getName)
+                .flatMap(user -> ok(request).bodyValue(
+                        Map.of("id", id, "solved", userStatistics.hasSolved(user, id))));
+    }
+
+    /**
+     * This method returns the solve statistics of a quiz.
+     *
+     * @param request The request with the id of the quiz
+     * @return A response with the statistics or status 404 if the quiz is not found
+     */
+    public Mono<ServerResponse> getQuizStatistics(ServerRequest request) {
+        int id = pathId(request);
+        return blocking(() -> quizService.getQuizStatistics(id))
+                .flatMap(statistics -> ok(request).bodyValue(statistics))
+                .switchIfEmpty(ServerResponse.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    /**
+     * This method returns a list of all quizzes with paging or, if the after parameter is present, with keyset
+     * pagination. A client that has the current list gets status 304 without a query.
+     *
+     * @param request The request with the paging parameters
+     * @return A response with a list of all quizzes
+     */
+    public Mono<ServerResponse> getAllQuizzes(ServerRequest request) {
+        int page = intParam(request, "page", 0);
+        int pageSize = intParam(request, "pageSize", 10);
+        String sortBy = request.queryParam("sortBy").orElse("id");
+        Optional<String> after = request.queryParam("after");
+        // Read before the query, so a change during the query is never hidden behind this ETag
+        String etag = quizCache.getListEtag();
+        return request.checkNotModified(etag).switchIfEmpty(Mono.defer(() -> {
+            Mono<?> quizzes = after.isPresent()
+                    ? blocking(() -> SliceResponse.of(quizService.getQuizzesAfter(after.get(), pageSize),
+                    KeysetCursor::of))
+                    : blocking(() -> quizService.getAllQuizzes(page, pageSize, sortBy));
+            return quizzes.flatMap(body -> ok(request)
+                    .eTag(etag)
+                    .cacheControl(QUIZ_CACHE_CONTROL)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .bodyValue(body));
+        }));
+    }
+
+    /**
+     * This method returns a list of all quizzes that the user has completed with paging or, if the after parameter
+     * is present, with keyset pagination. If distinct is true, every solved quiz is returned once.
+     *
+     * @param request The request of the logged-in user with the paging parameters
+     * @return A response with a list of all quizzes that the user has completed
+     */
+    public Mono<ServerResponse> getCompletedQuizzes(ServerRequest request) {
+        int page = intParam(request, "page", 0);
+        int pageSize = intParam(request, "pageSize", 10);
+        String sortBy = request.queryParam("sortBy").orElse("completedAt");
+        Optional<String> after = request.queryParam("after");
+        if (request.queryParam("distinct").map(Boolean::parseBoolean).orElse(false)) {
+            // The solved quizzes are kept in memory, so they are served on the event loop
+            return request.principal().map(Principal::getName)
+                    .flatMap(user -> ok(request).bodyValue(
+                            userStatistics.getSolvedQuizzes(user, page, pageSize)));
+        }
+        return request.principal().map(Principal::getName)
+                .flatMap(user -> after.isPresent()
+                        ? blocking(() -> SliceResponse.of(
+                        quizService.getCompletedQuizzesAfter(user, after.get(), pageSize), KeysetCursor::of))
+                        : blocking(() -> quizService.getCompletedQuizzes(user, page, pageSize, sortBy)))
+                .flatMap(body -> ok(request).bodyValue(body));
+    }
+
+    /**
+     * This method returns the statistics of the logged-in user. The statistics are kept in memory, so they are
+     * served on the event loop.
+     *
+     * @param request The request of the logged-in user
+     * @return A response with the number of completed quizzes and the time of the last completion
+     */
+    public Mono<ServerResponse> getCompletedQuizStatistics(ServerRequest request) {
+        return request.principal().map(Principal::getName)
+                .flatMap(user -> ok(request).bodyValue(userStatistics.getStatistics(user)));
+    }
+
+    /**
+     * This method answers the endpoints that are only available in the servlet stack (the import and the exports).
+     * They stream a blocking JDBC cursor or request body, which the reactive stack does not bridge.
+     *
+     * @param request The request
+     * @return A response with the status 501
+     */
+    public Mono<ServerResponse> servletOnly(ServerRequest request) {
+        return Mono.error(new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                request.path() + " is only available without the reactive profile"));
+    }
+
+    /**
+     * This method returns the users with the most completed quizzes.
+     *
+     * @param request The request with the number of users
+     * @return A response with the users, most completions first
+     */
+    public Mono<ServerResponse> getLeaderboard(ServerRequest request) {
+        return ok(request).bodyValue(userStatistics.getLeaderboard(intParam(request, "limit", 10)));
+    }
+
+    /**
+     * This method searches the title, text and options of all quizzes. The quizzes that are not cached are loaded on
+     * the JDBC scheduler.
+     *
+     * @param request The request with the query and the number of quizzes
+     * @return A response with the matching quizzes, best match first
+     */
+    public Mono<ServerResponse> searchQuizzes(ServerRequest request) {
+        String query = request.queryParam("q").orElse("");
+        int limit = intParam(request, "limit", 10);
+        return blocking(() -> quizService.searchQuizzes(query, limit))
+                .flatMap(results -> ok(request).bodyValue(results));
+    }
+
+    /**
+     * This method allows the user to create a new quiz.
+     *
+     * @param request The request of the logged-in user with the quiz
+     * @return A response with the newly created quiz
+     */
+    public Mono<ServerResponse> postQuiz(ServerRequest request) {
+        return request.principal().map(Principal::getName)
+                .zipWith(validBody(request))
+                .flatMap(tuple -> blocking(() -> quizService.postQuiz(tuple.getT1(), tuple.getT2())))
+                .flatMap(body -> ok(request).bodyValue(body))
+                // An invalid quiz is not saved
+                .switchIfEmpty(ServerResponse.badRequest().build());
+    }
+
+    /**
+     * This method allows the user to solve a quiz.
+     *
+     * @param request The request of the logged-in user with the answer
+     * @return A response with the result of the quiz
+     */
+    public Mono<ServerResponse> solveQuiz(ServerRequest request) {
+        int id = pathId(request);
+        return request.principal().map(Principal::getName)
+                .zipWith(request.bodyToMono(ANSWER_TYPE))
+                // If the map is empty, default value should be an empty array
+                .flatMap(tuple -> blocking(() -> quizService.validateAnswer(
+                        tuple.getT1(), id, tuple.getT2().getOrDefault("answer", new int[0]))))
+                .flatMap(entity -> toServerResponse(request, entity));
+    }
+
+    /**
+     * This method allows the user to solve many quizzes in one request.
+     *
+     * @param request The request of the logged-in user with the answers
+     * @return A response with the result of every answer in the order of the request
+     */
+    public Mono<ServerResponse> solveQuizzes(ServerRequest request) {
+        return request.principal().map(Principal::getName)
+                .zipWith(request.bodyToMono(ANSWERS_TYPE))
+                .flatMap(tuple -> blocking(() -> quizService.validateAnswers(tuple.getT1(), tuple.getT2())))
+                .flatMap(results -> ok(request).bodyValue(results));
+    }
+
+    /**
+     * This method allows the user to delete a quiz.
+     *
+     * @param request The request of the logged-in user with the id of the quiz
+     * @return A response with the result of the deletion
+     */
+    public Mono<ServerResponse> deleteQuiz(ServerRequest request) {
+        int id = pathId(request);
+        return request.principal().map(Principal::getName)
+                .flatMap(user -> blocking(() -> quizService.deleteQuiz(user, id)))
+                .flatMap(entity -> toServerResponse(request, entity));
+    }
+
+    /**
+     * This method allows the user to update a quiz.
+     *
+     * @param request The request of the logged-in user with the quiz
+     * @return A response with the result of the update
+     */
+    public Mono<ServerResponse> patchQuiz(ServerRequest request) {
+        int id = pathId(request);
+        return request.principal().map(Principal::getName)
+                .zipWith(validBody(request))
+                .flatMap(tuple -> blocking(() -> quizService.patchQuiz(tuple.getT1(), id, tuple.getT2())))
+                .flatMap(entity -> toServerResponse(request, entity));
+    }
+
+    /**
+     * Helper method to run a blocking call on the scheduler for blocking calls. A null result completes empty.
+     *
+     * @param call The blocking call
+     * @return The result of the call
+     */
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(jdbcScheduler);
+    }
+
+    /**
+     * Helper method to read and validate a quiz request body, like <code>@Valid</code> does in the servlet stack.
+     *
+     * @param request The request with the quiz
+     * @return The quiz request or an error with status 400 if it is not valid
+     */
+    private Mono<QuizRequest> validBody(ServerRequest request) {
+        return request.bodyToMono(QuizRequest.class).flatMap(quizRequest -> {
+            Set<ConstraintViolation<QuizRequest>> violations = validator.validate(quizRequest);
+            if (!violations.isEmpty()) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        violations.iterator().next().getMessage()));
+            }
+            return Mono.just(quizRequest);
+        });
+    }
+
+    /**
+     * Helper method to convert the response of the {@link QuizService} to a server response. Objects are written in
+     * the format the client accepts.
+     *
+     * @param request The request with the Accept header
+     * @param entity  The response of the service
+     * @return The server response with the same status and body
+     */
+    static Mono<ServerResponse> toServerResponse(ServerRequest request, ResponseEntity<?> entity) {
+        ServerResponse.BodyBuilder response = ServerResponse.status(entity.getStatusCode());
+        if (!entity.hasBody()) {
+            return response.build();
+        }
+        if (!(entity.getBody() instanceof CharSequence)) {
+            response.contentType(acceptedFormat(request).getMediaType());
+        }
+        return response.bodyValue(entity.getBody());
+    }
+
+    /**
+     * Helper method to start a response with status 200 in the format the client accepts.
+     *
+     * @param request The request with the Accept header
+     * @return The response builder
+     */
+    private static ServerResponse.BodyBuilder ok(ServerRequest request) {
+        return ServerResponse.ok().contentType(acceptedFormat(request).getMediaType());
+    }
+
+    // Functional endpoints use the first writer that can write the body, so the format is negotiated here
+    private static WireFormat acceptedFormat(ServerRequest request) {
+        return WireFormat.negotiate(request.headers().firstHeader(HttpHeaders.ACCEPT));
+    }
+
+    private static int pathId(ServerRequest request) {
+        try {
+            return Integer.parseInt(request.pathVariable("id"));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid quiz id");
+        }
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        try {
+            return request.queryParam(name).map(Integer::parseInt).orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid parameter " + name);
+        }
+    }
+}
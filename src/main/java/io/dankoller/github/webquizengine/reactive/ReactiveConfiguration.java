@@ -0,0 +1,82 @@
+package io.dankoller.github.webquizengine.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * This class wires the reactive variant of the API, which is active with the <code>reactive</code> profile. Requests
+ * are served by Netty on a small number of event loop threads. The quiz, user and completion data is still accessed
+ * through the same services and JPA repositories as in the servlet stack, so every blocking call is moved to a
+ * dedicated scheduler that is sized like the connection pool and never runs on an event loop.
+ */
+@Configuration
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class ReactiveConfiguration {
+
+    /**
+     * This method creates the scheduler for blocking database and BCrypt calls. More threads than connections would
+     * only wait for the pool, so tasks beyond that are queued instead.
+     *
+     * @param poolSize      The maximum size of the connection pool
+     * @param queueCapacity The maximum number of blocking calls waiting for a thread
+     * @return The scheduler for blocking calls
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                   @Value("${quiz.reactive.queue-capacity:100000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(poolSize, queueCapacity, "jdbc");
+    }
+
+    /**
+     * This method selects Netty as the server. Tomcat is on the classpath for the servlet stack and would otherwise
+     * take precedence.
+     *
+     * @return The factory for the Netty server
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * This method maps the endpoints of the API to the handlers. The paths are the same as in the servlet stack. The
+     * streaming import and exports are only served by the servlet stack, their paths answer with 501 instead of being
+     * taken for a quiz id.
+     *
+     * @param quizHandler The handler for the quiz endpoints
+     * @param userHandler The handler for the user endpoints
+     * @return The routes of the API
+     */
+    @Bean
+    public RouterFunction<ServerResponse> quizRoutes(QuizHandler quizHandler, UserHandler userHandler) {
+        return RouterFunctions.route()
+                .POST("/api/register", userHandler::register)
+                .POST("/api/login", userHandler::login)
+                .POST("/api/quizzes/import", quizHandler::servletOnly)
+                .GET("/api/quizzes/export", quizHandler::servletOnly)
+                .GET("/api/quizzes/completed/export", quizHandler::servletOnly)
+                .GET("/api/quizzes/completed", quizHandler::getCompletedQuizzes)
+                .GET("/api/quizzes/completed/stats", quizHandler::getCompletedQuizStatistics)
+                .GET("/api/quizzes/leaderboard", quizHandler::getLeaderboard)
+                .GET("/api/quizzes/search", quizHandler::searchQuizzes)
+                .GET("/api/quizzes/{id}", quizHandler::getQuizById)
+                .GET("/api/quizzes/{id}/stats", quizHandler::getQuizStatistics)
+                .GET("/api/quizzes/{id}/solved", quizHandler::hasSolvedQuiz)
+                .GET("/api/quizzes", quizHandler::getAllQuizzes)
+                .POST("/api/quizzes", quizHandler::postQuiz)
+                .POST("/api/quizzes/solve", quizHandler::solveQuizzes)
+                .POST("/api/quizzes/{id}/solve", quizHandler::solveQuiz)
+                .DELETE("/api/quizzes/{id}", quizHandler::deleteQuiz)
+                .PATCH("/api/quizzes/{id}", quizHandler::patchQuiz)
+                .build();
+    }
+}
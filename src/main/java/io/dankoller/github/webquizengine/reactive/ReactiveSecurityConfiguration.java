@@ -0,0 +1,160 @@
+package io.dankoller.github.webquizengine.reactive;
+
+import io.dankoller.github.webquizengine.auth.BearerTokenAuthenticationFilter;
+import io.dankoller.github.webquizengine.auth.CachingAuthenticationProvider;
+import io.dankoller.github.webquizengine.auth.CredentialCache;
+import io.dankoller.github.webquizengine.auth.TokenProvider;
+import io.dankoller.github.webquizengine.auth.WebSecurityConfigurerImpl;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManagerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.NegatedServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * This class configures the security of the reactive variant of the API with the same rules as
+ * {@link WebSecurityConfigurerImpl}: HTTP Basic backed by the {@link CredentialCache} and, if enabled, bearer tokens.
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+@SuppressWarnings("unused")
+public class ReactiveSecurityConfiguration {
+    private static final String PREFIX = "Bearer ";
+
+    /**
+     * This method creates the authentication manager for HTTP Basic. The user lookup and the BCrypt check block, so
+     * the same providers as in the servlet stack run on the scheduler for blocking calls.
+     *
+     * @param userDetailsService The service to look up users
+     * @param credentialCache    The cache of verified credentials
+     * @param passwordEncoder    The encoder of the passwords
+     * @param jdbcScheduler      The scheduler for blocking calls
+     * @return The authentication manager
+     */
+    @Bean
+    public ReactiveAuthenticationManager reactiveAuthenticationManager(UserDetailsServiceImpl userDetailsService,
+                                                                       CredentialCache credentialCache,
+                                                                       PasswordEncoder passwordEncoder,
+                                                                       Scheduler jdbcScheduler) {
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        ReactiveAuthenticationManagerAdapter authenticationManager = new ReactiveAuthenticationManagerAdapter(
+                new ProviderManager(new CachingAuthenticationProvider(daoAuthenticationProvider, credentialCache)));
+        authenticationManager.setScheduler(jdbcScheduler);
+        return authenticationManager;
+    }
+
+    /**
+     * This method restricts access to the API endpoints. No security context is stored between requests.
+     *
+     * @param http               The {@link ServerHttpSecurity} to modify
+     * @param tokenProvider      The provider of bearer tokens, not available if token authentication is disabled
+     * @param userDetailsService The service to look up the users of the tokens
+     * @param jdbcScheduler      The scheduler for blocking calls
+     * @return The security filter chain
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ObjectProvider<TokenProvider> tokenProvider,
+                                                         UserDetailsServiceImpl userDetailsService,
+                                                         Scheduler jdbcScheduler) {
+        ServerAuthenticationEntryPoint entryPoint = new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED);
+        http
+                .httpBasic()
+                .authenticationEntryPoint(entryPoint) // handles 401 auth error
+                .and()
+                .csrf().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling().authenticationEntryPoint(entryPoint)
+                .and()
+                .authorizeExchange()
+                // Api endpoints
+                .pathMatchers("/api/register").permitAll()
+                .pathMatchers("/api/login").hasRole("USER")
+                .pathMatchers("/api/quizzes").hasRole("USER")
+                .pathMatchers("/api/quizzes/**").hasRole("USER")
+                .anyExchange().permitAll();
+
+        TokenProvider provider = tokenProvider.getIfAvailable();
+        if (provider != null) {
+            http.addFilterAt(bearerTokenFilter(provider, userDetailsService, jdbcScheduler, entryPoint),
+                    SecurityWebFiltersOrder.AUTHENTICATION);
+        }
+        return http.build();
+    }
+
+    /**
+     * This method uses the same password encoder as the servlet stack.
+     *
+     * @param meterRegistry The registry of the timers
+     * @return the {@link PasswordEncoder} to use
+     */
+    @Bean
+    public static PasswordEncoder getEncoder(MeterRegistry meterRegistry) {
+        return WebSecurityConfigurerImpl.getEncoder(meterRegistry);
+    }
+
+    /**
+     * Helper method to create the filter that authenticates requests with an <code>Authorization: Bearer</code>
+     * header, like the {@link BearerTokenAuthenticationFilter}. The signature is verified on the event loop, the check
+     * that the user still exists runs on the scheduler for blocking calls. The login endpoint only accepts HTTP Basic.
+     *
+     * @param tokenProvider      The provider of bearer tokens
+     * @param userDetailsService The service to look up the users of the tokens
+     * @param jdbcScheduler      The scheduler for blocking calls
+     * @param entryPoint         The entry point for invalid tokens
+     * @return The filter
+     */
+    private static AuthenticationWebFilter bearerTokenFilter(TokenProvider tokenProvider,
+                                                             UserDetailsServiceImpl userDetailsService,
+                                                             Scheduler jdbcScheduler,
+                                                             ServerAuthenticationEntryPoint entryPoint) {
+        AuthenticationWebFilter filter = new AuthenticationWebFilter((ReactiveAuthenticationManager) token -> {
+            TokenProvider.Claims claims = tokenProvider.verify((String) token.getCredentials());
+            if (claims == null) {
+                return Mono.error(new BadCredentialsException("Invalid or expired token"));
+            }
+            return Mono.fromCallable(() -> userDetailsService.loadUserById(claims.userId(), claims.email()))
+                    .subscribeOn(jdbcScheduler)
+                    .switchIfEmpty(Mono.error(new BadCredentialsException("Invalid or expired token")))
+                    .map(user -> new PreAuthenticatedAuthenticationToken(user, null, user.getAuthorities()));
+        });
+        filter.setRequiresAuthenticationMatcher(new NegatedServerWebExchangeMatcher(
+                ServerWebExchangeMatchers.pathMatchers(BearerTokenAuthenticationFilter.LOGIN_PATH)));
+        filter.setServerAuthenticationConverter(exchange -> {
+            String header = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            if (header == null || !header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+                return Mono.empty();
+            }
+            return Mono.just(new UsernamePasswordAuthenticationToken(null, header.substring(PREFIX.length()).trim()));
+        });
+        filter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(entryPoint));
+        return filter;
+    }
+}
@@ -0,0 +1,86 @@
+package io.dankoller.github.webquizengine.reactive;
+
+import io.dankoller.github.webquizengine.auth.TokenProvider;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.dankoller.github.webquizengine.request.RegistrationRequest;
+import io.dankoller.github.webquizengine.service.UserService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Set;
+
+/**
+ * This class handles the registration and login endpoints of the reactive variant of the API.
+ */
+@Component
+@Profile("reactive")
+@SuppressWarnings("unused")
+public class UserHandler {
+    private final UserService userService;
+    private final TokenProvider tokenProvider; // null if token authentication is disabled
+    private final Validator validator;
+    private final Scheduler jdbcScheduler;
+
+    public UserHandler(UserService userService,
+                       ObjectProvider<TokenProvider> tokenProvider,
+                       Validator validator,
+                       Scheduler jdbcScheduler) {
+        this.userService = userService;
+        this.tokenProvider = tokenProvider.getIfAvailable();
+        this.validator = validator;
+        this.jdbcScheduler = jdbcScheduler;
+    }
+
+    /**
+     * This method registers a new user. Encoding the password with BCrypt blocks, so it runs on the scheduler for
+     * blocking calls.
+     *
+     * @param request The request with the registration
+     * @return A response with the result of the registration
+     */
+    public Mono<ServerResponse> register(ServerRequest request) {
+        return request.bodyToMono(RegistrationRequest.class)
+                .flatMap(registration -> {
+                    Set<ConstraintViolation<RegistrationRequest>> violations = validator.validate(registration);
+                    if (!violations.isEmpty()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                violations.iterator().next().getMessage()));
+                    }
+                    return Mono.fromCallable(() -> userService.register(registration)).subscribeOn(jdbcScheduler);
+                })
+                .flatMap(entity -> QuizHandler.toServerResponse(request, entity));
+    }
+
+    /**
+     * This method exchanges the credentials of the user (sent via HTTP Basic) for a bearer token. A bearer token is
+     * not accepted, otherwise a stolen token could be renewed forever.
+     *
+     * @param request The request of the logged-in user
+     * @return A response with the token, 401 for a bearer token or 404 if token authentication is disabled
+     */
+    public Mono<ServerResponse> login(ServerRequest request) {
+        if (tokenProvider == null) {
+            return ServerResponse.notFound().build();
+        }
+        return request.principal()
+                .flatMap(principal -> {
+                    if (principal instanceof PreAuthenticatedAuthenticationToken
+                            || !(principal instanceof Authentication authentication)
+                            || !(authentication.getPrincipal() instanceof UserDetailsImpl user)) {
+                        return ServerResponse.status(HttpStatus.UNAUTHORIZED).build();
+                    }
+                    return ServerResponse.ok().bodyValue(tokenProvider.issue(user.getId(), user.getUsername()));
+                });
+    }
+}
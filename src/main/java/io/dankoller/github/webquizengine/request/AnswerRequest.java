@@ -0,0 +1,14 @@
+package io.dankoller.github.webquizengine.request;
+
+import lombok.*;
+
+/**
+ * This class represents the answer to one quiz in a batch of answers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerRequest {
+    private int id;
+    private int[] answer; // can be null (= no option selected)
+}
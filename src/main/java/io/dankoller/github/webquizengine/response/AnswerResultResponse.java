@@ -0,0 +1,15 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return the result of one answer in a batch of answers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerResultResponse {
+    private int id;
+    private boolean success;
+    private String feedback;
+}
@@ -0,0 +1,26 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * This class is used to return the result of a bulk import. Only the items that could not be imported are listed, the
+ * index is the position of the item in the request body (starting with "0").
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResponse {
+    private int imported;
+    private int failed;
+    private List<ImportError> errors;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportError {
+        private int index;
+        private String message;
+    }
+}
@@ -0,0 +1,16 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return a user on the leaderboard. The user is identified by the id, so the emails of other
+ * users are not exposed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntryResponse {
+    private int rank;
+    private long userId;
+    private long completions;
+}
@@ -0,0 +1,17 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return a quiz that matches a search query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuizSearchResponse {
+    private int id;
+    private String title;
+    private String text;
+    private String[] options;
+    private double score;
+}
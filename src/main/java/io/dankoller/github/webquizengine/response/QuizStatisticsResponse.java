@@ -0,0 +1,18 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return the statistics of a quiz. The option counts contain how often each option was part of
+ * an answer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuizStatisticsResponse {
+    private int id;
+    private long attempts;
+    private long successes;
+    private double successRate; // 0 if the quiz has not been attempted
+    private long[] optionCounts;
+}
@@ -0,0 +1,34 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * This class is used to return a slice of a keyset paginated list. Unlike a page it has no total count, the cursor in
+ * the next field is passed as the after parameter to get the following slice.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SliceResponse<T> {
+    private List<T> content;
+    private int numberOfElements;
+    private boolean hasNext;
+    private String next; // null if this is the last slice
+
+    /**
+     * This method creates a response for a slice.
+     *
+     * @param slice  The slice
+     * @param cursor The function that creates the cursor pointing after an element
+     * @return The slice response
+     */
+    public static <T> SliceResponse<T> of(Slice<T> slice, Function<T, String> cursor) {
+        List<T> content = slice.getContent();
+        String next = slice.hasNext() && !content.isEmpty() ? cursor.apply(content.get(content.size() - 1)) : null;
+        return new SliceResponse<>(content, content.size(), slice.hasNext(), next);
+    }
+}
@@ -0,0 +1,13 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return a quiz that a user has solved at least once.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SolvedQuizResponse {
+    private int id;
+}
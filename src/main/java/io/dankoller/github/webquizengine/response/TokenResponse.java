@@ -0,0 +1,15 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+/**
+ * This class is used to return a bearer token to the user after a successful login.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenResponse {
+    private String token;
+    private String type;
+    private long expiresIn; // seconds
+}
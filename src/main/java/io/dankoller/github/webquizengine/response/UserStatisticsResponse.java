@@ -0,0 +1,18 @@
+package io.dankoller.github.webquizengine.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is used to return the statistics of a user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatisticsResponse {
+    private String email;
+    private long completions;
+    private long distinctCompletions; // the number of different quizzes the user has solved
+    private LocalDateTime lastCompletedAt; // null if the user has not completed a quiz
+}
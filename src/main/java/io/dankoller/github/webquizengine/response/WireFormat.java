@@ -0,0 +1,71 @@
+package io.dankoller.github.webquizengine.response;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * This enum contains the formats the responses can be written in. JSON is the default, the binary Jackson formats
+ * CBOR and Smile are only used if the client asks for them in the Accept header.
+ */
+public enum WireFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR),
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    private final MediaType mediaType;
+    private final String etagSuffix;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+        this.etagSuffix = "-" + name().toLowerCase() + "\"";
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * This method returns the ETag of this format for the ETag of the JSON representation, so each format has its own
+     * ETag. The binary formats are serialized per request and compressed by the server, which never compresses a
+     * response with a strong ETag, so their ETag is weak.
+     *
+     * @param jsonEtag The ETag of the JSON representation
+     * @return The ETag of this format
+     */
+    public String etag(String jsonEtag) {
+        return this == JSON ? jsonEtag : "W/" + jsonEtag.substring(0, jsonEtag.length() - 1) + etagSuffix;
+    }
+
+    /**
+     * This method selects the format of a response by the Accept header of the request. Wildcards select JSON, so
+     * clients that do not ask for a binary format always get JSON.
+     *
+     * @param accept The value of the Accept header or null if the request does not have it
+     * @return The preferred format, JSON if none of the formats is accepted
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (WireFormat format : values()) {
+                if (mediaType.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,376 @@
+package io.dankoller.github.webquizengine.search;
+
+import io.dankoller.github.webquizengine.persistence.QuizRepository;
+import io.dankoller.github.webquizengine.response.QuizResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is an in-memory inverted index over the title, text and options of all quizzes. Queries are ranked with
+ * BM25. The index is built from the {@link QuizRepository} at startup and updated whenever a quiz is created, changed,
+ * imported or deleted. Searches share a read lock, updates take the write lock.
+ */
+@Component
+public class QuizSearchIndex implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(QuizSearchIndex.class);
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Usual BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Terms of the title count twice
+    private static final int TITLE_WEIGHT = 2;
+
+    private final QuizRepository quizRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    // Documents are numbered densely, so the scores of a query fit into an array
+    private Document[] byNumber = new Document[1024];
+    private int[] freeNumbers = new int[16];
+    private int freeCount;
+    private int nextNumber;
+    private long totalLength;
+    // At most one score array per processor is kept, searches beyond that allocate a temporary one
+    private final BlockingQueue<Scores> scoresPool =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private volatile boolean running;
+
+    public QuizSearchIndex(QuizRepository quizRepository) {
+        this.quizRepository = quizRepository;
+    }
+
+    /**
+     * This method adds a quiz to the index or replaces the indexed version of the quiz.
+     *
+     * @param id      The id of the quiz
+     * @param title   The title of the quiz
+     * @param text    The text of the quiz
+     * @param options The options of the quiz
+     */
+    public void index(int id, String title, String text, String[] options) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = addTerms(frequencies, title, TITLE_WEIGHT) + addTerms(frequencies, text, 1);
+        if (options != null) {
+            for (String option : options) {
+                length += addTerms(frequencies, option, 1);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            int number = freeCount > 0 ? freeNumbers[--freeCount] : nextNumber++;
+            if (number >= byNumber.length) {
+                byNumber = Arrays.copyOf(byNumber, byNumber.length * 2);
+            }
+            String[] terms = new String[frequencies.size()];
+            int[] slots = new int[terms.length];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Postings termPostings = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+                slots[i] = termPostings.add(number, entry.getValue(), i);
+                // The key of the postings is kept, so every term is stored once
+                terms[i++] = entry.getKey();
+            }
+            Document document = new Document(number, id, length, terms, slots);
+            byNumber[number] = document;
+            documents.put(id, document);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method removes a quiz from the index.
+     *
+     * @param id The id of the quiz
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method searches the quizzes. A quiz matches if it contains at least one of the terms of the query, quizzes
+     * that contain rare terms often rank first.
+     *
+     * @param query The query
+     * @param limit The maximum number of results
+     * @return The matching quizzes, best match first
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageLength = Math.max(1, (double) totalLength / documentCount);
+            Scores queryScores = scoresPool.poll();
+            if (queryScores == null) {
+                queryScores = new Scores();
+            }
+            queryScores.ensureCapacity(nextNumber);
+            try {
+                for (String term : terms) {
+                    Postings termPostings = postings.get(term);
+                    if (termPostings == null) {
+                        continue;
+                    }
+                    double idf = Math.log(1 + (documentCount - termPostings.size + 0.5) / (termPostings.size + 0.5));
+                    for (int i = 0; i < termPostings.size; i++) {
+                        int number = termPostings.numbers[i];
+                        int frequency = termPostings.frequencies[i];
+                        double norm = K1 * (1 - B + B * byNumber[number].length / averageLength);
+                        queryScores.add(number, idf * frequency * (K1 + 1) / (frequency + norm));
+                    }
+                }
+                return topHits(queryScores, limit);
+            } finally {
+                queryScores.clear();
+                scoresPool.offer(queryScores);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns the number of indexed quizzes.
+     *
+     * @return The number of quizzes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper method to select the best hits with a min-heap of the limit size.
+     */
+    private List<Hit> topHits(Scores queryScores, int limit) {
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1);
+        for (int i = 0; i < queryScores.touchedCount; i++) {
+            int number = queryScores.touched[i];
+            double score = queryScores.values[number];
+            if (best.size() < limit || score > best.peek().score()) {
+                best.add(new Hit(byNumber[number].id, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.reverseOrder());
+        return hits;
+    }
+
+    private void removeDocument(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (int i = 0; i < document.terms.length; i++) {
+            Postings termPostings = postings.get(document.terms[i]);
+            int slot = document.slots[i];
+            if (termPostings.remove(slot)) {
+                // The last posting took the place of the removed one, so its document has a new slot for the term
+                byNumber[termPostings.numbers[slot]].slots[termPostings.termIndexes[slot]] = slot;
+            }
+            if (termPostings.size == 0) {
+                postings.remove(document.terms[i]);
+            }
+        }
+        byNumber[document.number] = null;
+        if (freeCount == freeNumbers.length) {
+            freeNumbers = Arrays.copyOf(freeNumbers, freeCount * 2);
+        }
+        freeNumbers[freeCount++] = document.number;
+        totalLength -= document.length;
+    }
+
+    private static int addTerms(Map<String, Integer> frequencies, String value, int weight) {
+        List<String> terms = tokenize(value);
+        for (String term : terms) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+        return terms.size() * weight;
+    }
+
+    /**
+     * This method splits a text into lower-case terms of letters and digits. Terms of a single character are ignored.
+     *
+     * @param value The text
+     * @return The terms in the order of the text
+     */
+    static List<String> tokenize(String value) {
+        List<String> terms = new ArrayList<>();
+        if (value == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean partOfTerm = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                if (i - start > 1) {
+                    terms.add(value.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    @Override
+    public void start() {
+        // The quizzes are read in slices of the keyset pagination, so the entities are never loaded
+        Slice<QuizResponse> slice = quizRepository.findResponsesOrderByIdDesc(PageRequest.of(0, LOAD_BATCH_SIZE));
+        while (true) {
+            for (QuizResponse quiz : slice.getContent()) {
+                index(quiz.getId(), quiz.getTitle(), quiz.getText(), quiz.getOptions());
+            }
+            if (!slice.hasNext() || slice.getContent().isEmpty()) {
+                break;
+            }
+            int lastId = slice.getContent().get(slice.getContent().size() - 1).getId();
+            slice = quizRepository.findResponsesBeforeOrderByIdDesc(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+        }
+        log.info("Indexed {} quizzes with {} terms", size(), postings.size());
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Built before the web server accepts requests
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * A quiz that matches a query.
+     */
+    public record Hit(int id, double score) implements Comparable<Hit> {
+        @Override
+        public int compareTo(Hit other) {
+            int byScore = Double.compare(score, other.score);
+            // Equal scores rank the newer quiz first
+            return byScore != 0 ? byScore : Integer.compare(id, other.id);
+        }
+    }
+
+    // The slots are the positions of the document in the postings of its terms, so it is removed without a search
+    private record Document(int number, int id, int length, String[] terms, int[] slots) {
+    }
+
+    /**
+     * The documents that contain a term, how often they contain it and the position of the term in the document.
+     */
+    private static final class Postings {
+        private int[] numbers = new int[4];
+        private int[] frequencies = new int[4];
+        private int[] termIndexes = new int[4];
+        private int size;
+
+        private int add(int number, int frequency, int termIndex) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                termIndexes = Arrays.copyOf(termIndexes, size * 2);
+            }
+            numbers[size] = number;
+            frequencies[size] = frequency;
+            termIndexes[size] = termIndex;
+            return size++;
+        }
+
+        // The order of the postings does not matter, so the last posting takes the place of the removed one
+        private boolean remove(int slot) {
+            size--;
+            if (slot == size) {
+                return false;
+            }
+            numbers[slot] = numbers[size];
+            frequencies[slot] = frequencies[size];
+            termIndexes[slot] = termIndexes[size];
+            return true;
+        }
+    }
+
+    /**
+     * The scores of one query, reused by later searches through the pool. Only the touched entries are reset.
+     */
+    private static final class Scores {
+        private double[] values = new double[0];
+        private int[] touched = new int[16];
+        private int touchedCount;
+
+        private void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                values = new double[Math.max(capacity, values.length * 2)];
+            }
+        }
+
+        private void add(int number, double score) {
+            if (values[number] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = number;
+            }
+            values[number] += score;
+        }
+
+        private void clear() {
+            for (int i = 0; i < touchedCount; i++) {
+                values[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.dankoller.github.webquizengine.service;
+
+import java.util.Arrays;
+
+/**
+ * This class is the precompiled form of the correct answer of a quiz. The indices of the correct options are stored as
+ * a bitset (one bit per option), so an answer is graded as a set: the order of the indices does not matter, duplicates
+ * count once and indices outside the options of the quiz make the answer wrong.
+ */
+public final class AnswerMask {
+    private static final long[] EMPTY = new long[0];
+
+    private final int optionCount;
+    private final long[] words; // Bit i of words[i / 64] is set if option i is correct
+    private final boolean satisfiable; // False if the stored answer refers to options that do not exist
+
+    private AnswerMask(int optionCount, long[] words, boolean satisfiable) {
+        this.optionCount = optionCount;
+        this.words = words;
+        this.satisfiable = satisfiable;
+    }
+
+    /**
+     * This method compiles the correct answer of a quiz.
+     *
+     * @param answer      The indices of the correct options (null means no option is correct)
+     * @param optionCount The number of options of the quiz
+     * @return The compiled answer
+     */
+    public static AnswerMask compile(int[] answer, int optionCount) {
+        long[] words = optionCount > 0 ? new long[(optionCount + 63) >>> 6] : EMPTY;
+        boolean satisfiable = true;
+        if (answer != null) {
+            for (int index : answer) {
+                if (index < 0 || index >= optionCount) {
+                    satisfiable = false;
+                } else {
+                    words[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        return new AnswerMask(optionCount, words, satisfiable);
+    }
+
+    /**
+     * This method checks if the answer of a user selects exactly the correct options. Quizzes with up to 64 options
+     * are graded without allocating.
+     *
+     * @param userAnswer The answer that the user submitted (null is treated as no option selected)
+     * @return True if the answer is correct, false otherwise
+     */
+    public boolean matches(int[] userAnswer) {
+        if (!satisfiable) {
+            return false;
+        }
+        if (userAnswer == null) {
+            return isEmpty();
+        }
+        if (words.length <= 1) {
+            long expected = words.length == 0 ? 0L : words[0];
+            long actual = 0L;
+            for (int index : userAnswer) {
+                if (index < 0 || index >= optionCount) {
+                    return false;
+                }
+                actual |= 1L << index;
+            }
+            return actual == expected;
+        }
+        long[] actual = new long[words.length];
+        for (int index : userAnswer) {
+            if (index < 0 || index >= optionCount) {
+                return false;
+            }
+            actual[index >>> 6] |= 1L << index;
+        }
+        return Arrays.equals(actual, words);
+    }
+
+    /**
+     * Helper method to check if no option is correct.
+     *
+     * @return True if no bit is set, false otherwise
+     */
+    private boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.entity.user.User;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PreRemove;
+import java.util.List;
+
+/**
+ * This class is a JPA entity listener that evicts the quizzes of a deleted user. The quizzes are deleted by the
+ * database (<code>ON DELETE CASCADE</code>), so Hibernate does not know about them. Their ids are read before the user
+ * is deleted and evicted when the transaction commits. It is instantiated by Hibernate through the Spring bean
+ * container, the {@link QuizService} is looked up on first use like in the {@link UserStatisticsInvalidator}.
+ */
+public class AuthoredQuizInvalidator {
+    private static final String AUTHORED_QUIZZES_SQL = "SELECT id FROM quiz WHERE author_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<QuizService> quizService;
+
+    public AuthoredQuizInvalidator(JdbcTemplate jdbcTemplate, ObjectProvider<QuizService> quizService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.quizService = quizService;
+    }
+
+    @PreRemove
+    public void evictQuizzes(User user) {
+        List<Integer> ids = jdbcTemplate.queryForList(AUTHORED_QUIZZES_SQL, Integer.class, user.getId());
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            quizService.getObject().evictDeletedQuizzes(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                quizService.getObject().evictDeletedQuizzes(ids);
+            }
+        });
+    }
+}
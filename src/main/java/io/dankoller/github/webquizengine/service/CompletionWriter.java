@@ -0,0 +1,297 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class records completed quizzes. Completions are put into a bounded queue and written every flush interval by
+ * the shared {@link TaskScheduler} with JDBC batch inserts, so solving a quiz does not wait for the database. If the
+ * queue stays full for longer than the offer timeout, the completion is written by the calling thread instead
+ * (backpressure). Pending completions are written when the application shuts down. A batch that fails is retried row
+ * by row, a batch that could not get a connection is queued again for the next flush. Completions that cannot be
+ * written at all are logged and counted by the <code>quiz.completions.failed</code> metric.
+ */
+@Component
+public class CompletionWriter implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CompletionWriter.class);
+
+    // The id comes from the same sequence Hibernate uses for CompletedQuiz, the user is resolved by the database
+    private static final String INSERT_SQL = "INSERT INTO completed_quiz (completion_id, id, completed_at, user_id) " +
+            "SELECT NEXT VALUE FOR hibernate_sequence, ?, ?, u.id FROM user u WHERE u.normalized_email = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserStatistics userStatistics;
+    private final TaskScheduler taskScheduler;
+    private final boolean async;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final BlockingQueue<PendingCompletion> queue;
+    private final Counter failedCompletions;
+    // Submitters check that the writer is running and queue under the read lock, stop() flips the flag under the write
+    // lock, so no completion can be queued after the queue has been drained
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running;
+    private ScheduledFuture<?> flushTask;
+
+    public CompletionWriter(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            UserStatistics userStatistics,
+                            TaskScheduler taskScheduler,
+                            MeterRegistry meterRegistry,
+                            @Value("${quiz.completions.async:true}") boolean async,
+                            @Value("${quiz.completions.queue-capacity:10000}") int queueCapacity,
+                            @Value("${quiz.completions.batch-size:100}") int batchSize,
+                            @Value("${quiz.completions.flush-interval:200ms}") Duration flushInterval,
+                            @Value("${quiz.completions.offer-timeout:50ms}") Duration offerTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userStatistics = userStatistics;
+        this.taskScheduler = taskScheduler;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("quiz.completions.queue.size", queue, BlockingQueue::size)
+                .description("The number of completed quizzes waiting to be written")
+                .register(meterRegistry);
+        this.failedCompletions = Counter.builder("quiz.completions.failed")
+                .description("The number of completed quizzes that could not be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * This method records that a user completed a quiz.
+     *
+     * @param quizId      The id of the quiz
+     * @param email       The email of the user
+     * @param completedAt The time the quiz was completed
+     */
+    public void submit(int quizId, String email, LocalDateTime completedAt) {
+        PendingCompletion completion = new PendingCompletion(quizId, email, completedAt);
+        runningLock.readLock().lock();
+        try {
+            if (async && running && offer(completion)) {
+                return;
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        write(List.of(completion));
+    }
+
+    /**
+     * Helper method to put a completion into the queue, waiting at most the offer timeout for free space.
+     *
+     * @param completion The completion
+     * @return True if the completion was queued, false otherwise
+     */
+    private boolean offer(PendingCompletion completion) {
+        try {
+            return queue.offer(completion, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * This method records that a user completed several quizzes at the same time. Completions that do not fit into
+     * the queue are written by the calling thread as one batch.
+     *
+     * @param quizIds     The ids of the quizzes
+     * @param email       The email of the user
+     * @param completedAt The time the quizzes were completed
+     */
+    public void submitAll(List<Integer> quizIds, String email, LocalDateTime completedAt) {
+        List<PendingCompletion> rejected = new ArrayList<>();
+        runningLock.readLock().lock();
+        try {
+            for (int quizId : quizIds) {
+                PendingCompletion completion = new PendingCompletion(quizId, email, completedAt);
+                if (!async || !running || !offer(completion)) {
+                    rejected.add(completion);
+                }
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        if (!rejected.isEmpty()) {
+            write(rejected);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        flushTask = taskScheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+
+    @Override
+    public void stop() {
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        // Write everything that is still queued
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server, so completions of in-flight requests are still written
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    /**
+     * Helper method run by the scheduler every flush interval and once more at shutdown. It writes everything that is
+     * queued in batches of at most the batch size. If no connection can be obtained, the scheduled call stops and the
+     * queued completions are written by the next one. The call at shutdown waits for a scheduled call that is still
+     * running.
+     */
+    private synchronized void flush() {
+        List<PendingCompletion> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            boolean written = write(batch);
+            batch.clear();
+            if (!written && running) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method to insert a batch of completions. The completions that were inserted are counted by the
+     * {@link UserStatistics}. The batch is inserted in one transaction. If it fails, e.g. because one row violates a
+     * constraint, the completions are inserted one by one, so only the failing ones are lost. If no connection can be
+     * obtained, e.g. because the pool timed out, every row would fail as well, so the batch is queued again.
+     *
+     * @param batch The completions to insert
+     * @return False if no connection could be obtained, true otherwise
+     */
+    private boolean write(List<PendingCompletion> batch) {
+        int[][] counts;
+        try {
+            counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                    (statement, completion) -> {
+                        statement.setInt(1, completion.quizId());
+                        statement.setTimestamp(2, Timestamp.valueOf(completion.completedAt()));
+                        statement.setString(3, completion.email().toLowerCase(Locale.ROOT));
+                    }));
+        } catch (CannotCreateTransactionException | CannotGetJdbcConnectionException e) {
+            log.warn("Could not get a connection to write a batch of {} completed quizzes", batch.size(), e);
+            retryLater(batch);
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("Could not write a batch of {} completed quizzes, writing them one by one", batch.size(), e);
+            batch.forEach(this::writeOne);
+            return true;
+        }
+        int index = 0;
+        for (int[] batchCounts : counts) {
+            for (int count : batchCounts) {
+                recorded(batch.get(index++), count);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to insert a single completion.
+     *
+     * @param completion The completion to insert
+     */
+    private void writeOne(PendingCompletion completion) {
+        int count;
+        try {
+            count = jdbcTemplate.update(INSERT_SQL, completion.quizId(), Timestamp.valueOf(completion.completedAt()),
+                    completion.email().toLowerCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            lost(completion, e);
+            return;
+        }
+        recorded(completion, count);
+    }
+
+    /**
+     * Helper method to queue completions again after no connection could be obtained. Completions that do not fit
+     * into the queue or arrive after the writer has stopped are lost.
+     *
+     * @param batch The completions to queue
+     */
+    private void retryLater(List<PendingCompletion> batch) {
+        runningLock.readLock().lock();
+        try {
+            for (PendingCompletion completion : batch) {
+                if (!async || !running || !queue.offer(completion)) {
+                    lost(completion, null);
+                }
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+    }
+
+    private void lost(PendingCompletion completion, Exception e) {
+        failedCompletions.increment();
+        log.error("Could not write the completion of quiz {} by {}", completion.quizId(), completion.email(), e);
+    }
+
+    private void recorded(PendingCompletion completion, int count) {
+        // Nothing is inserted for an unknown user
+        if (count == 0) {
+            return;
+        }
+        // The completion is stored, a failing statistics update must not stop the remaining completions
+        try {
+            userStatistics.recordCompletion(completion.email(), completion.quizId(), completion.completedAt());
+        } catch (RuntimeException e) {
+            log.error("Could not count the completion of quiz {} by {}", completion.quizId(), completion.email(), e);
+        }
+    }
+
+    private record PendingCompletion(int quizId, String email, LocalDateTime completedAt) {
+    }
+}
@@ -0,0 +1,100 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.entity.CompletedQuiz;
+import io.dankoller.github.webquizengine.response.QuizResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * This class encodes and decodes the opaque cursors used for keyset pagination. A cursor contains the sort key of the
+ * last element of a slice, so the next slice can be read with an index seek instead of an offset.
+ */
+public final class KeysetCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * This method creates the cursor that points after the given quiz.
+     *
+     * @param quiz The last quiz of a slice
+     * @return The cursor
+     */
+    public static String of(QuizResponse quiz) {
+        return encode(String.valueOf(quiz.getId()));
+    }
+
+    /**
+     * This method creates the cursor that points after the given completed quiz.
+     *
+     * @param completedQuiz The last completed quiz of a slice
+     * @return The cursor
+     */
+    public static String of(CompletedQuiz completedQuiz) {
+        return encode(completedQuiz.getCompletedAt() + "|" + completedQuiz.getCompletionId());
+    }
+
+    /**
+     * This method decodes a quiz cursor.
+     *
+     * @param cursor The cursor sent by the client
+     * @return The id of the last quiz the client has seen
+     */
+    public static int decodeQuizId(String cursor) {
+        try {
+            return Integer.parseInt(decode(cursor));
+        } catch (NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    /**
+     * This method decodes a completed quiz cursor.
+     *
+     * @param cursor The cursor sent by the client
+     * @return The position of the last completed quiz the client has seen
+     */
+    public static CompletionPosition decodeCompletion(String cursor) {
+        String value = decode(cursor);
+        int separator = value.indexOf('|');
+        if (separator < 0) {
+            throw invalidCursor();
+        }
+        try {
+            return new CompletionPosition(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    Integer.parseInt(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static String encode(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static ResponseStatusException invalidCursor() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+
+    /**
+     * The sort key of a completed quiz. The completion id breaks ties between completions with the same timestamp.
+     */
+    public record CompletionPosition(LocalDateTime completedAt, int completionId) {
+    }
+}
@@ -0,0 +1,309 @@
+package io.dankoller.github.webquizengine.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class exports quizzes and completed quizzes as NDJSON or CSV. Rows are read from a forward-only cursor and
+ * written to the response as they arrive, so the memory used does not depend on the size of the tables. Every running
+ * export holds a database connection, so only a few exports run at once and each has its own timeout.
+ */
+@Service
+@Timed(value = "quiz.service", histogram = true)
+public class QuizExporter {
+    private static final String QUIZZES_SQL = "SELECT id, title, text, options_json FROM quiz ORDER BY id";
+    private static final String COMPLETED_QUIZZES_SQL = "SELECT c.id, c.completed_at FROM completed_quiz c " +
+            "JOIN user u ON u.id = c.user_id WHERE u.normalized_email = ? AND c.completed_at >= ? " +
+            "ORDER BY c.completed_at, c.completion_id";
+    private static final Timestamp BEGINNING = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+    private final Duration timeout;
+    private final Semaphore permits;
+
+    public QuizExporter(ObjectMapper objectMapper,
+                        JdbcTemplate jdbcTemplate,
+                        @Value("${quiz.export.fetch-size:1000}") int fetchSize,
+                        @Value("${quiz.export.timeout:1h}") Duration timeout,
+                        @Value("${quiz.export.max-concurrent:4}") int maxConcurrent) {
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * This method runs an export on the MVC task executor with the export timeout instead of the timeout of other
+     * asynchronous requests. If all permits are taken, the export is rejected with 503. The permit is held until the
+     * export has stopped reading, which may be after the request timed out.
+     *
+     * @param format   The format of the export
+     * @param response The response to write to
+     * @param export   The export
+     * @return The task that writes the export
+     */
+    public WebAsyncTask<Void> runAsync(Format format, HttpServletResponse response, StreamingResponseBody export) {
+        if (!permits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many exports are running, try again later");
+        }
+        // Set by the export or, if the request completed before the export started, by the completion callback
+        AtomicBoolean started = new AtomicBoolean();
+        WebAsyncTask<Void> task = new WebAsyncTask<>(timeout.toMillis(), () -> {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                response.setContentType(format.getMediaType().toString());
+                export.writeTo(response.getOutputStream());
+                return null;
+            } finally {
+                permits.release();
+            }
+        });
+        task.onCompletion(() -> {
+            if (started.compareAndSet(false, true)) {
+                permits.release();
+            }
+        });
+        return task;
+    }
+
+    /**
+     * This method writes all quizzes ordered by id. The options are stored as JSON and are copied without parsing.
+     *
+     * @param format The format of the export
+     * @param out    The stream to write to
+     * @throws IOException If the export could not be written
+     */
+    public void exportQuizzes(Format format, OutputStream out) throws IOException {
+        if (format == Format.CSV) {
+            try (Writer writer = csvWriter(out, "id,title,text,options")) {
+                query(QUIZZES_SQL, statement -> {
+                }, row -> {
+                    writer.write(Integer.toString(row.getInt(1)));
+                    writer.write(',');
+                    writeCsvValue(writer, row.getString(2));
+                    writer.write(',');
+                    writeCsvValue(writer, row.getString(3));
+                    writer.write(',');
+                    writeCsvValue(writer, row.getString(4));
+                    writer.write("\r\n");
+                });
+            }
+        } else {
+            try (JsonGenerator generator = ndjsonGenerator(out)) {
+                query(QUIZZES_SQL, statement -> {
+                }, row -> {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", row.getInt(1));
+                    generator.writeStringField("title", row.getString(2));
+                    generator.writeStringField("text", row.getString(3));
+                    generator.writeFieldName("options");
+                    String options = row.getString(4);
+                    if (options == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeRawValue(options);
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                });
+            }
+        }
+    }
+
+    /**
+     * This method writes the quizzes a user has completed, oldest first.
+     *
+     * @param email  The email of the user
+     * @param since  Only completions at or after this time are written, null for all
+     * @param format The format of the export
+     * @param out    The stream to write to
+     * @throws IOException If the export could not be written
+     */
+    public void exportCompletedQuizzes(String email, LocalDateTime since, Format format, OutputStream out)
+            throws IOException {
+        StatementBinder binder = statement -> {
+            statement.setString(1, email.toLowerCase(Locale.ROOT));
+            statement.setTimestamp(2, since != null ? Timestamp.valueOf(since) : BEGINNING);
+        };
+        if (format == Format.CSV) {
+            try (Writer writer = csvWriter(out, "id,completedAt")) {
+                query(COMPLETED_QUIZZES_SQL, binder, row -> {
+                    writer.write(Integer.toString(row.getInt(1)));
+                    writer.write(',');
+                    writer.write(formatTimestamp(row.getTimestamp(2)));
+                    writer.write("\r\n");
+                });
+            }
+        } else {
+            try (JsonGenerator generator = ndjsonGenerator(out)) {
+                query(COMPLETED_QUIZZES_SQL, binder, row -> {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", row.getInt(1));
+                    generator.writeStringField("completedAt", formatTimestamp(row.getTimestamp(2)));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                });
+            }
+        }
+    }
+
+    /**
+     * Helper method to run a query and pass every row to the row writer. H2 builds the complete result before
+     * returning the first row unless lazy query execution is enabled, so it is enabled for the duration of the query.
+     *
+     * @param sql    The query
+     * @param binder The binder of the query parameters
+     * @param writer The writer of a row
+     * @throws IOException If a row could not be written
+     */
+    private void query(String sql, StatementBinder binder, RowWriter writer) throws IOException {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                setLazyQueryExecution(connection, true);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    statement.setFetchSize(fetchSize);
+                    binder.bind(statement);
+                    try (ResultSet row = statement.executeQuery()) {
+                        while (row.next()) {
+                            writer.write(row);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    // The connection goes back to the pool
+                    setLazyQueryExecution(connection, false);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
+
+    private JsonGenerator ndjsonGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(out);
+        // Every object is terminated by a line break instead
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private static Writer csvWriter(OutputStream out, String header) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(header);
+        writer.write("\r\n");
+        return writer;
+    }
+
+    /**
+     * Helper method to write a value as a CSV field (RFC 4180). Fields with a separator, quote or line break are
+     * quoted.
+     *
+     * @param writer The writer
+     * @param value  The value or null for an empty field
+     * @throws IOException If the value could not be written
+     */
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String formatTimestamp(Timestamp timestamp) {
+        return timestamp.toLocalDateTime().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    /**
+     * This enum contains the supported export formats.
+     */
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * This method returns the format with the given name.
+         *
+         * @param name The name of the format, case-insensitive
+         * @return The format
+         * @throws ResponseStatusException If the format is not supported
+         */
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format " + name);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet row) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,243 @@
+package io.dankoller.github.webquizengine.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dankoller.github.webquizengine.cache.QuizCache;
+import io.dankoller.github.webquizengine.entity.IntArrayConverter;
+import io.dankoller.github.webquizengine.entity.StringArrayConverter;
+import io.dankoller.github.webquizengine.entity.user.User;
+import io.dankoller.github.webquizengine.persistence.UserRepository;
+import io.dankoller.github.webquizengine.request.QuizRequest;
+import io.dankoller.github.webquizengine.response.ImportResponse;
+import io.dankoller.github.webquizengine.search.QuizSearchIndex;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class imports quizzes in bulk. The body is read with the streaming parser one item at a time, so only the
+ * current item and the current batch are kept in memory. Every item is validated like a single posted quiz, valid
+ * items are inserted with JDBC batch inserts and invalid items are reported with their index.
+ */
+@Service
+@Timed(value = "quiz.service", histogram = true)
+public class QuizImporter {
+    private static final Logger log = LoggerFactory.getLogger(QuizImporter.class);
+
+    // The ids come from the same sequence Hibernate uses for Quiz. They are taken before the insert, so the imported
+    // quizzes can be added to the search index.
+    private static final String NEXT_IDS_SQL = "SELECT NEXT VALUE FOR hibernate_sequence FROM SYSTEM_RANGE(1, ?)";
+    private static final String INSERT_SQL = "INSERT INTO quiz (id, title, text, options_json, answer_indices, " +
+            "author_id) VALUES (?, ?, ?, ?, ?, ?)";
+    // Column lengths of the quiz table, longer values would fail the whole batch
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_OPTIONS_LENGTH = 4096;
+    private static final int MAX_ANSWER_LENGTH = 1024;
+
+    private static final StringArrayConverter OPTIONS_CONVERTER = new StringArrayConverter();
+    private static final IntArrayConverter ANSWER_CONVERTER = new IntArrayConverter();
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final QuizSearchIndex quizSearchIndex;
+    private final QuizCache quizCache;
+    private final int batchSize;
+
+    public QuizImporter(ObjectMapper objectMapper,
+                        Validator validator,
+                        JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        UserRepository userRepository,
+                        QuizSearchIndex quizSearchIndex,
+                        QuizCache quizCache,
+                        @Value("${quiz.import.batch-size:500}") int batchSize) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRepository = userRepository;
+        this.quizSearchIndex = quizSearchIndex;
+        this.quizCache = quizCache;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * This method imports the quizzes of a JSON array or of newline delimited JSON objects (NDJSON). If the body is
+     * malformed, the items before the error are still imported and the error is reported for the item it occurred in.
+     *
+     * @param author The username of the user
+     * @param body   The request body
+     * @return The number of imported quizzes and the errors of the items that were not imported
+     * @throws IOException If the body could not be read
+     */
+    public ImportResponse importQuizzes(String author, InputStream body) throws IOException {
+        // The author is resolved once for all items
+        User user = userRepository.findByEmailIgnoreCase(author);
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+        }
+
+        Import result = new Import(user.getId());
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                // Only the current item is read into a tree, so a wrong item does not break the stream
+                JsonNode item = parser.readValueAsTree();
+                result.add(item);
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // Nothing after malformed JSON can be read
+            result.errors.add(new ImportResponse.ImportError(result.index, "Malformed JSON: " + e.getOriginalMessage()));
+        }
+        result.flush();
+        // Items of failed batches are reported after later items
+        result.errors.sort(Comparator.comparingInt(ImportResponse.ImportError::getIndex));
+        return new ImportResponse(result.imported, result.errors.size(), result.errors);
+    }
+
+    /**
+     * Helper method to validate a quiz request with the bean validation constraints, the rules of
+     * {@link QuizService#isValidQuizRequest(QuizRequest)} and the column lengths.
+     *
+     * @param quizRequest The quiz request
+     * @return The error message or null if the quiz is valid
+     */
+    private String validate(QuizRequest quizRequest) {
+        Set<ConstraintViolation<QuizRequest>> violations = validator.validate(quizRequest);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<QuizRequest> violation = violations.iterator().next();
+            return violation.getPropertyPath() + " " + violation.getMessage();
+        }
+        if (!QuizService.isValidQuizRequest(quizRequest)) {
+            return "Invalid quiz";
+        }
+        if (quizRequest.getTitle().length() > MAX_TEXT_LENGTH || quizRequest.getText().length() > MAX_TEXT_LENGTH) {
+            return "title and text must not be longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * This class holds the state of one import: the current batch, the index of the next item and the errors.
+     */
+    private class Import {
+        private final long authorId;
+        private final List<Object[]> batch = new ArrayList<>(batchSize);
+        private final List<Integer> batchIndexes = new ArrayList<>(batchSize);
+        private final List<QuizRequest> batchRequests = new ArrayList<>(batchSize);
+        private final List<ImportResponse.ImportError> errors = new ArrayList<>();
+        private int imported;
+        private int index;
+
+        private Import(long authorId) {
+            this.authorId = authorId;
+        }
+
+        private void add(JsonNode item) {
+            int itemIndex = index++;
+            QuizRequest quizRequest;
+            try {
+                quizRequest = objectMapper.treeToValue(item, QuizRequest.class);
+            } catch (JsonProcessingException e) {
+                errors.add(new ImportResponse.ImportError(itemIndex, e.getOriginalMessage()));
+                return;
+            }
+            String error = validate(quizRequest);
+            if (error != null) {
+                errors.add(new ImportResponse.ImportError(itemIndex, error));
+                return;
+            }
+            String options = OPTIONS_CONVERTER.convertToDatabaseColumn(quizRequest.getOptions());
+            String answer = ANSWER_CONVERTER.convertToDatabaseColumn(quizRequest.getAnswer());
+            if (options.length() > MAX_OPTIONS_LENGTH || (answer != null && answer.length() > MAX_ANSWER_LENGTH)) {
+                errors.add(new ImportResponse.ImportError(itemIndex, "options or answer are too long"));
+                return;
+            }
+            // The id is set when the batch is inserted
+            batch.add(new Object[]{null, quizRequest.getTitle(), quizRequest.getText(), options, answer, authorId});
+            batchIndexes.add(itemIndex);
+            batchRequests.add(quizRequest);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Helper method to insert the current batch in one transaction. If the batch fails, its items are inserted
+         * one by one, so only the failing items are reported.
+         */
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                List<Integer> ids = jdbcTemplate.queryForList(NEXT_IDS_SQL, Integer.class, batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i)[0] = ids.get(i);
+                }
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch));
+                imported += batch.size();
+                for (int i = 0; i < batch.size(); i++) {
+                    index(i);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not insert a batch of {} quizzes, inserting them one by one", batch.size(), e);
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        if (batch.get(i)[0] == null) {
+                            batch.get(i)[0] = jdbcTemplate.queryForObject(NEXT_IDS_SQL, Integer.class, 1);
+                        }
+                        jdbcTemplate.update(INSERT_SQL, batch.get(i));
+                        imported++;
+                        index(i);
+                    } catch (DataAccessException itemException) {
+                        errors.add(new ImportResponse.ImportError(batchIndexes.get(i), "Could not store the quiz"));
+                    }
+                }
+            }
+            // The imported quizzes change the lists of quizzes
+            quizCache.quizzesChanged();
+            batch.clear();
+            batchIndexes.clear();
+            batchRequests.clear();
+        }
+
+        /**
+         * Helper method to add an inserted quiz of the current batch to the search index.
+         *
+         * @param i The position of the quiz in the batch
+         */
+        private void index(int i) {
+            QuizRequest quizRequest = batchRequests.get(i);
+            quizSearchIndex.index((Integer) batch.get(i)[0], quizRequest.getTitle(), quizRequest.getText(),
+                    quizRequest.getOptions());
+        }
+    }
+}
@@ -1,36 +1,72 @@
 package io.dankoller.github.webquizengine.service;
 
+import io.dankoller.github.webquizengine.cache.QuizCache;
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
 import io.dankoller.github.webquizengine.entity.CompletedQuiz;
 import io.dankoller.github.webquizengine.entity.Quiz;
 import io.dankoller.github.webquizengine.entity.user.User;
 import io.dankoller.github.webquizengine.persistence.CompletedQuizRepository;
 import io.dankoller.github.webquizengine.persistence.QuizRepository;
 import io.dankoller.github.webquizengine.persistence.UserRepository;
+import io.dankoller.github.webquizengine.request.AnswerRequest;
 import io.dankoller.github.webquizengine.request.QuizRequest;
+import io.dankoller.github.webquizengine.response.AnswerResultResponse;
 import io.dankoller.github.webquizengine.response.QuizAnswerResponse;
 import io.dankoller.github.webquizengine.response.QuizResponse;
+import io.dankoller.github.webquizengine.response.QuizSearchResponse;
+import io.dankoller.github.webquizengine.response.QuizStatisticsResponse;
+import io.dankoller.github.webquizengine.search.QuizSearchIndex;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "quiz.service", histogram = true)
 @SuppressWarnings("unused")
 public class QuizService {
+    private static final String CORRECT_FEEDBACK = "Congratulations, you're right!";
+    private static final String WRONG_FEEDBACK = "Wrong answer! Please, try again.";
+    private static final String NOT_FOUND_FEEDBACK = "Quiz not found";
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    @Value("${quiz.solve.max-batch-size:1000}")
+    private int maxBatchSize;
     @Autowired
     private QuizRepository quizRepository;
     @Autowired
     private CompletedQuizRepository completedQuizRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private QuizCache quizCache;
+    @Autowired
+    private CompletionWriter completionWriter;
+    @Autowired
+    private QuizStatistics quizStatistics;
+    @Autowired
+    private QuizSearchIndex quizSearchIndex;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
     /**
      * This method is used to validate the answer to a quiz.
@@ -41,46 +77,161 @@ public class QuizService {
      * @return A ResponseEntity with the result of the answer
      */
     public ResponseEntity<?> validateAnswer(String username, int quizId, int[] userAnswer) {
-        Quiz quiz = quizRepository.findById(quizId).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        if (quiz.getAnswer() == null && userAnswer.length == 0 || Arrays.equals(userAnswer, quiz.getAnswer())) {
-            markQuizAsCompleted(quiz, username);
-            return new ResponseEntity<>(new QuizAnswerResponse(true, "Congratulations, you're right!"), HttpStatus.OK);
+        QuizSnapshot quiz = quizCache.get(quizId);
+        if (quiz == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        boolean correct = quiz.isCorrectAnswer(userAnswer);
+        quizStatistics.recordAttempt(quiz, userAnswer, correct);
+        if (correct) {
+            markQuizAsCompleted(quiz.getId(), username);
+            return new ResponseEntity<>(new QuizAnswerResponse(true, CORRECT_FEEDBACK), HttpStatus.OK);
         } else {
-            return new ResponseEntity<>(new QuizAnswerResponse(false, "Wrong answer! Please, try again."), HttpStatus.OK);
+            return new ResponseEntity<>(new QuizAnswerResponse(false, WRONG_FEEDBACK), HttpStatus.OK);
         }
     }
 
     /**
-     * Helper method to save a completed quiz to the database.
+     * This method is used to validate many answers at once. All quizzes are looked up together and the completions of
+     * all correct answers are saved as one batch. A batch with a missing answer is rejected before any answer is
+     * counted.
      *
-     * @param quiz     The quiz that was completed
      * @param username The username of the user
+     * @param answers  The answers that the user submitted
+     * @return The result of every answer in the order of the answers
      */
-    private void markQuizAsCompleted(Quiz quiz, String username) {
-        User user = userRepository.findByEmailIgnoreCase(username);
-        CompletedQuiz completedQuiz = new CompletedQuiz(quiz.getId(), LocalDateTime.now(), user);
-        completedQuizRepository.save(completedQuiz);
+    public List<AnswerResultResponse> validateAnswers(String username, List<AnswerRequest> answers) {
+        if (answers.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxBatchSize + " answers can be submitted at once");
+        }
+        if (answers.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every answer must be an object with an id");
+        }
+        Set<Integer> ids = answers.stream().map(AnswerRequest::getId).collect(Collectors.toSet());
+        Map<Integer, QuizSnapshot> quizzes = quizCache.getAll(ids);
+
+        List<AnswerResultResponse> results = new ArrayList<>(answers.size());
+        List<Integer> completedQuizIds = new ArrayList<>();
+        for (AnswerRequest answer : answers) {
+            QuizSnapshot quiz = quizzes.get(answer.getId());
+            if (quiz == null) {
+                results.add(new AnswerResultResponse(answer.getId(), false, NOT_FOUND_FEEDBACK));
+                continue;
+            }
+            int[] userAnswer = answer.getAnswer() != null ? answer.getAnswer() : new int[0];
+            boolean correct = quiz.isCorrectAnswer(userAnswer);
+            quizStatistics.recordAttempt(quiz, userAnswer, correct);
+            if (correct) {
+                completedQuizIds.add(quiz.getId());
+                results.add(new AnswerResultResponse(answer.getId(), true, CORRECT_FEEDBACK));
+            } else {
+                results.add(new AnswerResultResponse(answer.getId(), false, WRONG_FEEDBACK));
+            }
+        }
+        completionWriter.submitAll(completedQuizIds, username, LocalDateTime.now());
+        return results;
     }
 
     /**
-     * THis method is used to get a quiz by its id.
+     * Helper method to save a completed quiz to the database. The completion is written asynchronously by the
+     * {@link CompletionWriter}.
+     *
+     * @param quizId   The id of the quiz that was completed
+     * @param username The username of the user
+     */
+    private void markQuizAsCompleted(int quizId, String username) {
+        completionWriter.submit(quizId, username, LocalDateTime.now());
+    }
+
+    /**
+     * This method is used to get a quiz by its id. The quiz is served from the {@link QuizCache}.
+     *
+     * @param id The id of the quiz
+     * @return The quiz with the given id or null if it does not exist
+     */
+    public QuizSnapshot getQuizById(int id) {
+        return quizCache.get(id);
+    }
+
+    /**
+     * This method is used to get the solve statistics of a quiz.
      *
      * @param id The id of the quiz
-     * @return The quiz with the given id
+     * @return The statistics of the quiz or null if it does not exist
      */
-    public Quiz getQuizById(int id) {
-        return quizRepository.findById(id).orElse(null);
+    public QuizStatisticsResponse getQuizStatistics(int id) {
+        QuizSnapshot quiz = quizCache.get(id);
+        return quiz != null ? quizStatistics.getStatistics(quiz) : null;
+    }
+
+    /**
+     * This method searches the title, text and options of all quizzes. The matches are ranked by the
+     * {@link QuizSearchIndex} and served from the {@link QuizCache}.
+     *
+     * @param query The search query
+     * @param limit The maximum number of quizzes
+     * @return The matching quizzes, best match first
+     */
+    public List<QuizSearchResponse> searchQuizzes(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The query must not be empty");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        List<QuizSearchIndex.Hit> hits = quizSearchIndex.search(query, limit);
+        Map<Integer, QuizSnapshot> quizzes = quizCache.getAll(
+                hits.stream().map(QuizSearchIndex.Hit::id).collect(Collectors.toSet()));
+        List<QuizSearchResponse> results = new ArrayList<>(hits.size());
+        for (QuizSearchIndex.Hit hit : hits) {
+            QuizSnapshot quiz = quizzes.get(hit.id());
+            // A quiz that was deleted after the search is skipped
+            if (quiz != null) {
+                QuizResponse response = quiz.toResponse();
+                results.add(new QuizSearchResponse(response.getId(), response.getTitle(), response.getText(),
+                        response.getOptions(), hit.score()));
+            }
+        }
+        return results;
     }
 
     /**
-     * This method is used to get all quizzes from the database using pagination.
+     * This method is used to get all quizzes from the database using pagination. Only the columns of the response are
+     * selected, the entities are not loaded.
      *
      * @param page The page number
      * @return A page of quizzes
      */
-    public Page<Quiz> getAllQuizzes(int page, int pageSize, String sortBy) {
+    public Page<QuizResponse> getAllQuizzes(int page, int pageSize, String sortBy) {
         Pageable pageable = PageRequest.of(page, pageSize, Sort.Direction.DESC, sortBy);
-        return quizRepository.findAll(pageable);
+        return quizRepository.findAllResponses(pageable);
+    }
+
+    /**
+     * This method returns the weak ETag of the lists of quizzes. It is taken from the {@link QuizCache}, so no query is
+     * needed.
+     *
+     * @return The weak ETag
+     */
+    public String getQuizListEtag() {
+        return quizCache.getListEtag();
+    }
+
+    /**
+     * This method is used to get quizzes using keyset pagination, newest first. No total count is computed.
+     *
+     * @param after    The cursor of the last quiz the client has seen or an empty string for the first slice
+     * @param pageSize The maximum number of quizzes
+     * @return A slice of quizzes
+     */
+    public Slice<QuizResponse> getQuizzesAfter(String after, int pageSize) {
+        Pageable pageable = PageRequest.of(0, pageSize);
+        if (after.isEmpty()) {
+            return quizRepository.findResponsesOrderByIdDesc(pageable);
+        }
+        return quizRepository.findResponsesBeforeOrderByIdDesc(KeysetCursor.decodeQuizId(after), pageable);
     }
 
     /**
@@ -96,6 +247,26 @@ public class QuizService {
         return completedQuizRepository.findAllByUser(user, pageable);
     }
 
+    /**
+     * This method gets the quizzes that have been completed by a user using keyset pagination, most recent first. No
+     * total count is computed.
+     *
+     * @param username The username of the user
+     * @param after    The cursor of the last completion the client has seen or an empty string for the first slice
+     * @param pageSize The maximum number of completed quizzes
+     * @return A slice of completed quizzes
+     */
+    public Slice<CompletedQuiz> getCompletedQuizzesAfter(String username, String after, int pageSize) {
+        Pageable pageable = PageRequest.of(0, pageSize);
+        User user = userRepository.findByEmailIgnoreCase(username);
+        if (after.isEmpty()) {
+            return completedQuizRepository.findAllByUserOrderByCompletedAtDescCompletionIdDesc(user, pageable);
+        }
+        KeysetCursor.CompletionPosition position = KeysetCursor.decodeCompletion(after);
+        return completedQuizRepository.findAllByUserAfter(
+                user, position.completedAt(), position.completionId(), pageable);
+    }
+
     /**
      * This method allows the creation of a new quiz.
      *
@@ -115,6 +286,8 @@ public class QuizService {
                     userRepository.findByEmailIgnoreCase(author));
             // Add the quiz to the database
             quizRepository.save(quiz);
+            quizCache.put(quiz);
+            quizSearchIndex.index(quiz.getId(), quiz.getTitle(), quiz.getText(), quiz.getOptions());
             // Return the quiz to the user
             return new QuizResponse(quiz.getId(), quiz.getTitle(), quiz.getText(), quiz.getOptions());
         } else {
@@ -142,9 +315,28 @@ public class QuizService {
         }
         // Delete the quiz
         quizRepository.deleteById(id);
+        quizCache.invalidate(id);
+        quizStatistics.remove(id);
+        quizSearchIndex.remove(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * This method removes quizzes that were deleted by the database instead of Hibernate (with their author) from the
+     * second-level cache, the quiz cache, the statistics and the search index.
+     *
+     * @param ids The ids of the deleted quizzes
+     */
+    public void evictDeletedQuizzes(Collection<Integer> ids) {
+        Cache entityCache = entityManagerFactory.getCache();
+        for (int id : ids) {
+            entityCache.evict(Quiz.class, id);
+            quizCache.invalidate(id);
+            quizStatistics.remove(id);
+            quizSearchIndex.remove(id);
+        }
+    }
+
     /**
      * This method is used to update a quiz.
      *
@@ -167,12 +359,21 @@ public class QuizService {
         // Validate the quiz
         if (isValidQuizRequest(quizRequest)) {
             // Update the quiz
+            // The statistics of the old options and answer do not apply to the patched quiz
+            boolean changed = !Arrays.equals(quiz.getOptions(), quizRequest.getOptions())
+                    || !Arrays.equals(quiz.getAnswer(), quizRequest.getAnswer());
             quiz.setTitle(quizRequest.getTitle());
             quiz.setText(quizRequest.getText());
             quiz.setOptions(quizRequest.getOptions());
             quiz.setAnswer(quizRequest.getAnswer());
             // Save the quiz to the database
             quizRepository.save(quiz);
+            // Reset before the new snapshot is cached, so no attempt of the new version is dropped
+            if (changed) {
+                quizStatistics.reset(quiz.getId(), QuizSnapshot.answerVersion(quiz.getOptions(), quiz.getAnswer()));
+            }
+            quizCache.put(quiz);
+            quizSearchIndex.index(quiz.getId(), quiz.getTitle(), quiz.getText(), quiz.getOptions());
             // Return a quiz response to the user
             return new ResponseEntity<>(new QuizResponse(
                     quiz.getId(),
@@ -185,16 +386,36 @@ public class QuizService {
     }
 
     /**
-     * A helper method to validate if a quiz request is a valid quiz.
+     * A helper method to validate if a quiz request is a valid quiz. It is shared with the {@link QuizImporter}.
      *
      * @param quizRequest The quiz request
      * @return True if the quiz is valid, false otherwise
      */
-    private boolean isValidQuizRequest(QuizRequest quizRequest) {
+    static boolean isValidQuizRequest(QuizRequest quizRequest) {
         boolean isValidTitle = quizRequest.getTitle() != null && !quizRequest.getTitle().isEmpty();
         boolean isValidText = quizRequest.getText() != null && !quizRequest.getText().isEmpty();
         boolean isValidOptions = quizRequest.getOptions() != null && quizRequest.getOptions().length >= 2;
-        // The answer can be null, so we don't need to check it
-        return isValidTitle && isValidText && isValidOptions;
+        // The answer can be null, but every index must point to an option
+        return isValidTitle && isValidText && isValidOptions
+                && isValidAnswer(quizRequest.getAnswer(), quizRequest.getOptions().length);
+    }
+
+    /**
+     * Helper method to check that every index of an answer points to an option.
+     *
+     * @param answer       The indices of the correct options, may be null
+     * @param optionsCount The number of options
+     * @return True if no index is negative or out of range
+     */
+    private static boolean isValidAnswer(int[] answer, int optionsCount) {
+        if (answer == null) {
+            return true;
+        }
+        for (int index : answer) {
+            if (index < 0 || index >= optionsCount) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,301 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
+import io.dankoller.github.webquizengine.persistence.SchemaMigration;
+import io.dankoller.github.webquizengine.response.QuizStatisticsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the attempts, the correct attempts and the chosen options of every quiz. Attempts are recorded
+ * into {@link LongAdder}s, so concurrent attempts of the same quiz do not contend for a lock or a database row. The
+ * totals are loaded from the quiz_statistics table at startup and written back periodically and at shutdown, so at
+ * most the attempts of one interval are lost if the application is killed. The totals are written by the shared
+ * {@link TaskScheduler}. The counters of a quiz belong to one version of its options and answer (see {@link
+ * QuizSnapshot#answerVersion}), attempts that were graded against another version are not counted.
+ */
+@Component
+public class QuizStatistics implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(QuizStatistics.class);
+
+    private static final String LOAD_SQL = "SELECT quiz_id, attempts, successes, option_counts FROM quiz_statistics";
+    // Nothing is written for a quiz that has been deleted in the meantime
+    private static final String PERSIST_SQL = "MERGE INTO quiz_statistics " +
+            "(quiz_id, attempts, successes, option_counts) KEY (quiz_id) SELECT q.id, ?, ?, ? FROM quiz q WHERE q.id = ?";
+    private static final String RESET_SQL = "DELETE FROM quiz_statistics WHERE quiz_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration persistInterval;
+    private final Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ScheduledFuture<?> persistTask;
+
+    // The SchemaMigration is injected, so the quiz_statistics table exists before the totals are loaded
+    public QuizStatistics(JdbcTemplate jdbcTemplate,
+                          SchemaMigration schemaMigration,
+                          TaskScheduler taskScheduler,
+                          @Value("${quiz.analytics.persist-interval:10s}") Duration persistInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskScheduler = taskScheduler;
+        this.persistInterval = persistInterval;
+    }
+
+    /**
+     * This method records an attempt to solve a quiz. Every selected option is counted once, indices that are not an
+     * option of the quiz are ignored. An attempt that was graded against a snapshot from before the options or the
+     * answer changed is not counted.
+     *
+     * @param quiz       The quiz
+     * @param userAnswer The answer that the user submitted
+     * @param correct    True if the answer was correct
+     */
+    public void recordAttempt(QuizSnapshot quiz, int[] userAnswer, boolean correct) {
+        int optionCount = quiz.getOptionCount();
+        Counters quizCounters = counters.computeIfAbsent(quiz.getId(),
+                id -> new Counters(quiz.getAnswerVersion(), optionCount));
+        if (!quizCounters.accepts(quiz.getAnswerVersion())) {
+            return;
+        }
+        quizCounters.attempts.increment();
+        if (correct) {
+            quizCounters.successes.increment();
+        }
+        if (userAnswer != null && userAnswer.length > 0 && optionCount > 0) {
+            LongAdder[] options = quizCounters.options(optionCount);
+            if (optionCount <= 64) {
+                // The options that were already counted, without allocating
+                long selected = 0L;
+                for (int index : userAnswer) {
+                    if (index >= 0 && index < optionCount && (selected & 1L << index) == 0) {
+                        selected |= 1L << index;
+                        options[index].increment();
+                    }
+                }
+            } else {
+                boolean[] selected = new boolean[optionCount];
+                for (int index : userAnswer) {
+                    if (index >= 0 && index < optionCount && !selected[index]) {
+                        selected[index] = true;
+                        options[index].increment();
+                    }
+                }
+            }
+        }
+        dirty.add(quiz.getId());
+    }
+
+    /**
+     * This method returns the statistics of a quiz.
+     *
+     * @param quiz The quiz
+     * @return The attempts, the success rate and how often each option was chosen
+     */
+    public QuizStatisticsResponse getStatistics(QuizSnapshot quiz) {
+        long[] optionCounts = new long[quiz.getOptionCount()];
+        Counters quizCounters = counters.get(quiz.getId());
+        if (quizCounters == null) {
+            return new QuizStatisticsResponse(quiz.getId(), 0, 0, 0, optionCounts);
+        }
+        long attempts = quizCounters.attempts.sum();
+        long successes = quizCounters.successes.sum();
+        LongAdder[] options = quizCounters.options;
+        for (int i = 0; i < optionCounts.length && i < options.length; i++) {
+            optionCounts[i] = options[i].sum();
+        }
+        return new QuizStatisticsResponse(quiz.getId(), attempts, successes,
+                attempts > 0 ? (double) successes / attempts : 0, optionCounts);
+    }
+
+    /**
+     * This method discards the statistics of a deleted quiz. The row is deleted with the quiz.
+     *
+     * @param quizId The id of the quiz
+     */
+    public void remove(int quizId) {
+        counters.remove(quizId);
+        dirty.remove(quizId);
+    }
+
+    /**
+     * This method discards the statistics of a quiz whose options or answer have changed, so the attempts of the old
+     * quiz are not counted for the new one. The new counters only accept attempts of the new version, so a solve that
+     * still holds the old snapshot cannot count into them. The row is deleted too, otherwise it would be loaded again
+     * at startup.
+     *
+     * @param quizId        The id of the quiz
+     * @param answerVersion The version of the new options and answer
+     */
+    public synchronized void reset(int quizId, long answerVersion) {
+        counters.put(quizId, new Counters(answerVersion, 0));
+        dirty.remove(quizId);
+        jdbcTemplate.update(RESET_SQL, quizId);
+    }
+
+    /**
+     * Helper method to load the totals of all quizzes.
+     */
+    private void load() {
+        jdbcTemplate.query(LOAD_SQL, resultSet -> {
+            long[] optionCounts = parseCounts(resultSet.getString(4));
+            Counters quizCounters = new Counters(Counters.UNKNOWN_VERSION, optionCounts.length);
+            quizCounters.attempts.add(resultSet.getLong(2));
+            quizCounters.successes.add(resultSet.getLong(3));
+            for (int i = 0; i < optionCounts.length; i++) {
+                quizCounters.options[i].add(optionCounts[i]);
+            }
+            counters.put(resultSet.getInt(1), quizCounters);
+        });
+        log.info("Loaded the statistics of {} quizzes", counters.size());
+    }
+
+    /**
+     * Helper method to write the totals of the quizzes that were attempted since the last call. The adders are never
+     * reset, so no attempt that is recorded while the totals are read is lost. It does not run while the statistics of
+     * a quiz are reset, so the old totals cannot be written after the row was deleted, and the final call at shutdown
+     * waits for a scheduled call that is still running.
+     */
+    private synchronized void persist() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Iterator<Integer> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            Integer quizId = iterator.next();
+            // Removed before reading, so a later attempt marks the quiz as changed again
+            iterator.remove();
+            Counters quizCounters = counters.get(quizId);
+            if (quizCounters != null) {
+                batch.add(new Object[]{quizCounters.attempts.sum(), quizCounters.successes.sum(),
+                        formatCounts(quizCounters.options), quizId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(PERSIST_SQL, batch);
+        } catch (DataAccessException e) {
+            log.error("Could not write the statistics of {} quizzes", batch.size(), e);
+            batch.forEach(row -> dirty.add((Integer) row[3]));
+        }
+    }
+
+    private static String formatCounts(LongAdder[] options) {
+        StringBuilder builder = new StringBuilder(options.length * 3);
+        for (int i = 0; i < options.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(options[i].sum());
+        }
+        return builder.toString();
+    }
+
+    private static long[] parseCounts(String counts) {
+        if (counts == null || counts.isEmpty()) {
+            return new long[0];
+        }
+        String[] values = counts.split(",");
+        long[] parsed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Long.parseLong(values[i]);
+        }
+        return parsed;
+    }
+
+    @Override
+    public void start() {
+        load();
+        persistTask = taskScheduler.scheduleWithFixedDelay(this::persist, Instant.now().plus(persistInterval),
+                persistInterval);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (persistTask != null) {
+            persistTask.cancel(false);
+            persistTask = null;
+        }
+        persist();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server, so the attempts of in-flight requests are written
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * The counters of one quiz. The array of option counters only grows, e.g. when options are added to the quiz. The
+     * version of the totals loaded at startup is unknown, it is taken from the first attempt, because no snapshot from
+     * before the restart can still be in use.
+     */
+    private static final class Counters {
+        private static final long UNKNOWN_VERSION = 0L;
+
+        private final AtomicLong version;
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private volatile LongAdder[] options;
+
+        private Counters(long version, int optionCount) {
+            this.version = new AtomicLong(version);
+            this.options = newAdders(new LongAdder[0], optionCount);
+        }
+
+        private boolean accepts(long answerVersion) {
+            long current = version.get();
+            if (current == UNKNOWN_VERSION && version.compareAndSet(UNKNOWN_VERSION, answerVersion)) {
+                return true;
+            }
+            return version.get() == answerVersion;
+        }
+
+        private LongAdder[] options(int optionCount) {
+            LongAdder[] current = options;
+            if (current.length >= optionCount) {
+                return current;
+            }
+            synchronized (this) {
+                if (options.length < optionCount) {
+                    options = newAdders(options, optionCount);
+                }
+                return options;
+            }
+        }
+
+        private static LongAdder[] newAdders(LongAdder[] existing, int length) {
+            LongAdder[] adders = new LongAdder[length];
+            System.arraycopy(existing, 0, adders, 0, existing.length);
+            for (int i = existing.length; i < length; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.dankoller.github.webquizengine.service;
 import io.dankoller.github.webquizengine.entity.user.User;
 import io.dankoller.github.webquizengine.persistence.UserRepository;
 import io.dankoller.github.webquizengine.request.RegistrationRequest;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +11,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Service
+@Timed(value = "quiz.service", histogram = true)
 @SuppressWarnings("unused")
 public class UserService {
     @Autowired
@@ -0,0 +1,336 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.persistence.SchemaMigration;
+import io.dankoller.github.webquizengine.response.LeaderboardEntryResponse;
+import io.dankoller.github.webquizengine.response.SolvedQuizResponse;
+import io.dankoller.github.webquizengine.response.UserStatisticsResponse;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * This class keeps the number of completed quizzes and the set of solved quizzes per user in memory, so the statistics
+ * of a user, the distinct solved quizzes and the leaderboard are served without a <code>GROUP BY</code> over the
+ * completed quizzes. The solved quizzes are kept in a compressed bitmap of quiz ids, so solving the same quiz again
+ * does not use more memory. The counters are updated whenever the {@link CompletionWriter} has stored completions,
+ * rebuilt from the completed_quiz table at startup and written to the user_statistics table periodically by the shared
+ * {@link TaskScheduler} and at shutdown, so the statistics can also be queried with SQL. The leaderboard only shows the
+ * id of a user, never the email.
+ */
+@Component
+public class UserStatistics implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(UserStatistics.class);
+
+    private static final String REBUILD_SQL = "SELECT u.normalized_email, u.id, c.id, COUNT(*), " +
+            "MAX(c.completed_at) FROM completed_quiz c JOIN user u ON u.id = c.user_id " +
+            "GROUP BY u.normalized_email, u.id, c.id";
+    private static final String USER_ID_SQL = "SELECT id FROM user WHERE normalized_email = ?";
+    private static final String PERSIST_SQL = "MERGE INTO user_statistics " +
+            "(user_id, completions, distinct_completions, last_completed_at) KEY (user_id) " +
+            "SELECT u.id, ?, ?, ? FROM user u WHERE u.normalized_email = ?";
+
+    // Most completions first, ties by email
+    private static final Comparator<Rank> RANK_ORDER = Comparator.comparingLong(Rank::completions).reversed()
+            .thenComparing(Rank::email);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration persistInterval;
+    private final int maxLeaderboardSize;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Rank> leaderboard = new ConcurrentSkipListSet<>(RANK_ORDER);
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ScheduledFuture<?> persistTask;
+
+    // The SchemaMigration is injected, so the user_statistics table exists before the counters are rebuilt
+    public UserStatistics(JdbcTemplate jdbcTemplate,
+                          SchemaMigration schemaMigration,
+                          TaskScheduler taskScheduler,
+                          @Value("${quiz.stats.persist-interval:30s}") Duration persistInterval,
+                          @Value("${quiz.stats.leaderboard.max-size:100}") int maxLeaderboardSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskScheduler = taskScheduler;
+        this.persistInterval = persistInterval;
+        this.maxLeaderboardSize = maxLeaderboardSize;
+    }
+
+    /**
+     * This method records that a quiz completion of a user has been stored.
+     *
+     * @param email       The email of the user
+     * @param quizId      The id of the quiz
+     * @param completedAt The time the quiz was completed
+     */
+    public void recordCompletion(String email, int quizId, LocalDateTime completedAt) {
+        String key = email.toLowerCase(Locale.ROOT);
+        // The id is only read once per user. The user may have been deleted since the completion was stored, then
+        // no counter is created
+        Counter counter = counters.computeIfAbsent(key, k -> jdbcTemplate.query(USER_ID_SQL,
+                (resultSet, row) -> new Counter(k, resultSet.getLong(1)), k).stream().findFirst().orElse(null));
+        if (counter == null) {
+            return;
+        }
+        add(counter, quizId, completedAt);
+        dirty.add(key);
+    }
+
+    /**
+     * This method removes the statistics of a deleted user, so the user is no longer on the leaderboard.
+     *
+     * @param email The email of the user
+     */
+    public void removeUser(String email) {
+        String key = email.toLowerCase(Locale.ROOT);
+        Counter counter = counters.remove(key);
+        dirty.remove(key);
+        if (counter != null) {
+            synchronized (counter) {
+                leaderboard.remove(counter.rank);
+            }
+        }
+    }
+
+    /**
+     * This method returns the statistics of a user.
+     *
+     * @param email The email of the user
+     * @return The number of completed quizzes and the time of the last completion
+     */
+    public UserStatisticsResponse getStatistics(String email) {
+        Counter counter = counters.get(email.toLowerCase(Locale.ROOT));
+        if (counter == null) {
+            return new UserStatisticsResponse(email, 0, 0, null);
+        }
+        synchronized (counter) {
+            return new UserStatisticsResponse(email, counter.completions, counter.solved.getLongCardinality(),
+                    counter.lastCompletedAt);
+        }
+    }
+
+    /**
+     * This method checks if a user has solved a quiz at least once.
+     *
+     * @param email  The email of the user
+     * @param quizId The id of the quiz
+     * @return True if the user has solved the quiz
+     */
+    public boolean hasSolved(String email, int quizId) {
+        Counter counter = counters.get(email.toLowerCase(Locale.ROOT));
+        if (counter == null) {
+            return false;
+        }
+        synchronized (counter) {
+            return counter.solved.contains(quizId);
+        }
+    }
+
+    /**
+     * This method returns the quizzes a user has solved at least once, newest quiz first. The page is read from the
+     * bitmap by position, so it does not depend on how often the quizzes were solved.
+     *
+     * @param email    The email of the user
+     * @param page     The page number
+     * @param pageSize The number of quizzes per page
+     * @return A page of solved quizzes
+     */
+    public Page<SolvedQuizResponse> getSolvedQuizzes(String email, int page, int pageSize) {
+        PageRequest pageable = PageRequest.of(page, pageSize);
+        Counter counter = counters.get(email.toLowerCase(Locale.ROOT));
+        if (counter == null) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        synchronized (counter) {
+            long total = counter.solved.getLongCardinality();
+            List<SolvedQuizResponse> content = new ArrayList<>(pageSize);
+            for (long position = pageable.getOffset(); position < total && content.size() < pageSize; position++) {
+                // Positions count from the highest id
+                content.add(new SolvedQuizResponse(counter.solved.select((int) (total - 1 - position))));
+            }
+            return new PageImpl<>(content, pageable, total);
+        }
+    }
+
+    /**
+     * This method returns the users with the most completed quizzes. The leaderboard is kept sorted, so only the
+     * first entries are read.
+     *
+     * @param limit The number of users
+     * @return The users, most completions first
+     */
+    public List<LeaderboardEntryResponse> getLeaderboard(int limit) {
+        if (limit < 1 || limit > maxLeaderboardSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The limit must be between 1 and " + maxLeaderboardSize);
+        }
+        List<LeaderboardEntryResponse> entries = new ArrayList<>(limit);
+        Iterator<Rank> iterator = leaderboard.iterator();
+        while (entries.size() < limit && iterator.hasNext()) {
+            Rank rank = iterator.next();
+            // While a counter is updated, its old and new rank are both in the set for a moment, and the counter of
+            // a deleted user is removed before its rank
+            Counter counter = counters.get(rank.email());
+            if (counter != null && counter.rank == rank) {
+                entries.add(new LeaderboardEntryResponse(entries.size() + 1, counter.userId, rank.completions()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Helper method to add a completion to a counter and move the user to the new position in the leaderboard. The
+     * new rank is added before the old one is removed, so the user is always in the leaderboard.
+     *
+     * @param counter     The counter of the user
+     * @param quizId      The id of the quiz
+     * @param completedAt The time the quiz was completed
+     */
+    private void add(Counter counter, int quizId, LocalDateTime completedAt) {
+        synchronized (counter) {
+            Rank previous = counter.rank;
+            counter.add(quizId, 1, completedAt);
+            Rank next = new Rank(counter.completions, counter.email);
+            leaderboard.add(next);
+            counter.rank = next;
+            if (previous != null) {
+                leaderboard.remove(previous);
+            }
+        }
+    }
+
+    /**
+     * Helper method to rebuild the counters from the completed quizzes. It runs before any completion is recorded,
+     * so the leaderboard is filled once at the end.
+     */
+    private void rebuild() {
+        counters.clear();
+        leaderboard.clear();
+        jdbcTemplate.query(REBUILD_SQL, resultSet -> {
+            long userId = resultSet.getLong(2);
+            Counter counter = counters.computeIfAbsent(resultSet.getString(1), email -> new Counter(email, userId));
+            counter.add(resultSet.getInt(3), resultSet.getLong(4), resultSet.getTimestamp(5).toLocalDateTime());
+        });
+        for (Counter counter : counters.values()) {
+            counter.solved.runOptimize();
+            counter.rank = new Rank(counter.completions, counter.email);
+            leaderboard.add(counter.rank);
+            dirty.add(counter.email);
+        }
+        log.info("Rebuilt the statistics of {} users", counters.size());
+    }
+
+    /**
+     * Helper method to write the counters that changed since the last call to the user_statistics table. The final
+     * call at shutdown waits for a scheduled call that is still running.
+     */
+    private synchronized void persist() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Iterator<String> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            String email = iterator.next();
+            // Removed before reading, so a later update marks the counter as changed again
+            iterator.remove();
+            Counter counter = counters.get(email);
+            if (counter == null) {
+                continue;
+            }
+            synchronized (counter) {
+                batch.add(new Object[]{counter.completions, counter.solved.getLongCardinality(),
+                        Timestamp.valueOf(counter.lastCompletedAt), email});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(PERSIST_SQL, batch);
+        } catch (DataAccessException e) {
+            log.error("Could not write the statistics of {} users", batch.size(), e);
+            batch.forEach(row -> dirty.add((String) row[3]));
+        }
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        persist();
+        persistTask = taskScheduler.scheduleWithFixedDelay(this::persist, Instant.now().plus(persistInterval),
+                persistInterval);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (persistTask != null) {
+            persistTask.cancel(false);
+            persistTask = null;
+        }
+        persist();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Start before and stop after the CompletionWriter, so all completions it writes are counted and persisted
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * The counter of a user. It is guarded by its own monitor, only the current rank is also read without it.
+     */
+    private static final class Counter {
+        private final String email;
+        private final long userId;
+        private final RoaringBitmap solved = new RoaringBitmap();
+        private long completions;
+        private LocalDateTime lastCompletedAt;
+        private volatile Rank rank;
+
+        private Counter(String email, long userId) {
+            this.email = email;
+            this.userId = userId;
+        }
+
+        private void add(int quizId, long quizCompletions, LocalDateTime completedAt) {
+            solved.add(quizId);
+            completions += quizCompletions;
+            if (lastCompletedAt == null || completedAt.isAfter(lastCompletedAt)) {
+                lastCompletedAt = completedAt;
+            }
+        }
+    }
+
+    private record Rank(long completions, String email) {
+    }
+}
@@ -0,0 +1,25 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.entity.user.User;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.persistence.PostRemove;
+
+/**
+ * This class is a JPA entity listener that removes the statistics of a user from the {@link UserStatistics} when the
+ * user is deleted. The row in the user_statistics table is removed by the database. It is instantiated by Hibernate
+ * through the Spring bean container while the entity manager is created, so the statistics, which depend on the
+ * schema migration and with that on the entity manager, are looked up on first use.
+ */
+public class UserStatisticsInvalidator {
+    private final ObjectProvider<UserStatistics> userStatistics;
+
+    public UserStatisticsInvalidator(ObjectProvider<UserStatistics> userStatistics) {
+        this.userStatistics = userStatistics;
+    }
+
+    @PostRemove
+    public void remove(User user) {
+        userStatistics.getObject().removeUser(user.getEmail());
+    }
+}
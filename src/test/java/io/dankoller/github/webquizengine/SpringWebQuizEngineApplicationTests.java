@@ -1,8 +1,12 @@
 package io.dankoller.github.webquizengine;
 
+import com.jayway.jsonpath.JsonPath;
+import io.dankoller.github.webquizengine.auth.TokenProvider;
+import io.dankoller.github.webquizengine.config.EntityCacheConfiguration;
 import io.dankoller.github.webquizengine.entity.CompletedQuiz;
 import io.dankoller.github.webquizengine.entity.Quiz;
 import io.dankoller.github.webquizengine.entity.user.User;
+import io.dankoller.github.webquizengine.metrics.EntityCacheEndpoint;
 import io.dankoller.github.webquizengine.persistence.CompletedQuizRepository;
 import io.dankoller.github.webquizengine.persistence.QuizRepository;
 import io.dankoller.github.webquizengine.persistence.UserRepository;
@@ -17,14 +21,19 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -47,6 +56,10 @@ class SpringWebQuizEngineApplicationTests {
             "\"text\":\"What is depicted on the Java logo?\"," +
             "\"options\":[\"Robot\"]," +
             "\"answer\":[2, 3]}";
+    private final String outOfRangeAnswerQuizJson = "{\"title\":\"The Java Logo\"," +
+            "\"text\":\"What is depicted on the Java logo?\"," +
+            "\"options\":[\"Robot\",\"Tea leaf\"]," +
+            "\"answer\":[2]}";
     private final String patchedQuizJson = "{\"title\":\"Math\"," +
             "\"text\":\"Which of the following is equal to 4?\"," +
             "\"options\":[\"1+1\",\"2+2\",\"8-1\",\"5-1\"]," +
@@ -68,6 +81,12 @@ class SpringWebQuizEngineApplicationTests {
     private CompletedQuizRepository completedQuizRepository;
     @Autowired
     private QuizService quizService;
+    @Autowired
+    private EntityCacheEndpoint entityCacheEndpoint;
+    @Autowired
+    private TokenProvider tokenProvider;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
     // Test if the controllers are initialized
     @Test
@@ -95,6 +114,21 @@ class SpringWebQuizEngineApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"email\":\"" + invalidUserEmail + "\",\"password\":\"" + invalidUserPassword + "\"}"))
                 .andExpect(status().isBadRequest());
+
+        // Test if a token is issued for the password and accepted by the API, but cannot be renewed with itself
+        String token = JsonPath.read(mockMvc.perform(post("/api/login").with(httpBasic(validUserEmail, validUserPassword)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), "$.token");
+        mockMvc.perform(get("/api/quizzes").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/login").header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+
+        // Test if repeated lookups of the registered user are answered by the second-level cache
+        userRepository.findByEmailIgnoreCase(validUserEmail);
+        long hits = getRegion(EntityCacheConfiguration.USER_BY_EMAIL_REGION).hits();
+        assertThat(userRepository.findByEmailIgnoreCase(validUserEmail.toUpperCase())).isNotNull();
+        assertThat(getRegion(EntityCacheConfiguration.USER_BY_EMAIL_REGION).hits()).isEqualTo(hits + 1);
     }
 
     // Test if the user can post a new quiz
@@ -114,6 +148,16 @@ class SpringWebQuizEngineApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(invalidQuizJson))
                 .andExpect(status().isBadRequest());
+
+        // Test quiz post with an answer that is not an option
+        mockMvc.perform(post("/api/quizzes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(outOfRangeAnswerQuizJson))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/quizzes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(outOfRangeAnswerQuizJson.replace("[2]", "[-1]")))
+                .andExpect(status().isBadRequest());
     }
 
     // Test if the user can get all quizzes
@@ -124,6 +168,29 @@ class SpringWebQuizEngineApplicationTests {
         setUserAsAuthenticated();
         mockMvc.perform(get("/api/quizzes"))
                 .andExpect(status().isOk());
+
+        // Test keyset pagination
+        mockMvc.perform(get("/api/quizzes").param("after", ""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isArray())
+                .andExpect(jsonPath("$.hasNext").isBoolean());
+
+        // Test invalid cursor
+        mockMvc.perform(get("/api/quizzes").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+
+        // Test if the list is revalidated with its weak ETag until a quiz changes
+        String etag = mockMvc.perform(get("/api/quizzes"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("W/");
+        mockMvc.perform(get("/api/quizzes").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(post("/api/quizzes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(validQuizJson))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/quizzes").header("If-None-Match", etag))
+                .andExpect(status().isOk());
     }
 
     // Test if the user can get a specific quiz
@@ -132,8 +199,22 @@ class SpringWebQuizEngineApplicationTests {
     void testGetSpecificQuiz() throws Exception {
         // Set the user as authenticated
         setUserAsAuthenticated();
-        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId()))
-                .andExpect(status().isOk());
+        String etag = mockMvc.perform(get("/api/quizzes/" + getLatestQuizId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", containsString("no-cache")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Test if the quiz is not sent again if the client has the current version
+        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Test if the quiz is sent as CBOR with its own weak ETag if the client asks for it
+        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId()).accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", startsWith("W/" + etag.substring(0, etag.length() - 1))))
+                .andExpect(header().string("ETag", endsWith("-cbor\"")));
     }
 
     // Test if the user can solve a quiz
@@ -153,6 +234,31 @@ class SpringWebQuizEngineApplicationTests {
                         .content(invalidAnswerJson))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(false));
+
+        // Test batch of answers with an unknown quiz
+        mockMvc.perform(post("/api/quizzes/solve")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\":" + getLatestQuizId() + ",\"answer\":[2]}," +
+                                "{\"id\":" + getLatestQuizId() + ",\"answer\":[0]}," +
+                                "{\"id\":" + Integer.MAX_VALUE + ",\"answer\":[0]}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[1].success").value(false))
+                .andExpect(jsonPath("$[2].feedback").value("Quiz not found"));
+
+        // Test batch with a missing answer
+        mockMvc.perform(post("/api/quizzes/solve")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\":" + getLatestQuizId() + ",\"answer\":[2]},null]"))
+                .andExpect(status().isBadRequest());
+
+        // Test if every attempt is counted
+        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId() + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attempts").value(4))
+                .andExpect(jsonPath("$.successes").value(2))
+                .andExpect(jsonPath("$.optionCounts[0]").value(2))
+                .andExpect(jsonPath("$.optionCounts[2]").value(2));
     }
 
     // Test if the user can get all completed quizzes
@@ -164,6 +270,29 @@ class SpringWebQuizEngineApplicationTests {
         setUserAsAuthenticated();
         mockMvc.perform(get("/api/quizzes/completed"))
                 .andExpect(status().isOk());
+
+        // Test keyset pagination
+        mockMvc.perform(get("/api/quizzes/completed").param("after", ""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isArray());
+
+        // Test distinct solved quizzes
+        mockMvc.perform(get("/api/quizzes/completed").param("distinct", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isArray());
+        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId() + "/solved"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.solved").isBoolean());
+
+        // Test statistics and leaderboard
+        mockMvc.perform(get("/api/quizzes/completed/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.completions").isNumber());
+        mockMvc.perform(get("/api/quizzes/leaderboard").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+        mockMvc.perform(get("/api/quizzes/leaderboard").param("limit", "0"))
+                .andExpect(status().isBadRequest());
     }
 
     // Test if the user can patch a quiz
@@ -176,6 +305,24 @@ class SpringWebQuizEngineApplicationTests {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(patchedQuizJson))
                 .andExpect(status().isOk());
+        // The attempts of the old options do not count for the patched quiz
+        mockMvc.perform(get("/api/quizzes/" + getLatestQuizId() + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attempts").value(0));
+        mockMvc.perform(patch("/api/quizzes/" + getLatestQuizId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(outOfRangeAnswerQuizJson))
+                .andExpect(status().isBadRequest());
+
+        // Test if the search finds the patched quiz
+        mockMvc.perform(get("/api/quizzes/search").param("q", "math equal").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(getLatestQuizId()))
+                .andExpect(jsonPath("$[0].title").value("Math"));
+
+        // Test invalid search
+        mockMvc.perform(get("/api/quizzes/search").param("q", " "))
+                .andExpect(status().isBadRequest());
     }
 
     // Test if the user can delete a quiz
@@ -192,18 +339,83 @@ class SpringWebQuizEngineApplicationTests {
                 .andExpect(status().isNotFound());
     }
 
-    // Cleanups
+    // Test if the user can import quizzes in bulk
     @Test
     @Order(10)
-    void testCleanup() {
+    void testImportQuizzes() throws Exception {
+        // Set the user as authenticated
+        setUserAsAuthenticated();
+        // Test JSON array with one invalid item
+        mockMvc.perform(post("/api/quizzes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + validQuizJson + "," + invalidQuizJson + "," + patchedQuizJson + ","
+                                + outOfRangeAnswerQuizJson + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[1].index").value(3));
+
+        // Test NDJSON with malformed JSON at the end
+        mockMvc.perform(post("/api/quizzes/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(validQuizJson + "\n" + patchedQuizJson + "\n{\"title\":"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(2));
+
+        // Test if the imported quizzes are searchable
+        mockMvc.perform(get("/api/quizzes/search").param("q", "java logo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(getLatestQuizId() - 1));
+    }
+
+    // Test if the user can export quizzes and completed quizzes
+    @Test
+    @Order(11)
+    void testExportQuizzes() throws Exception {
+        // Set the user as authenticated
+        setUserAsAuthenticated();
+        MvcResult quizzes = mockMvc.perform(get("/api/quizzes/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(quizzes))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"title\":\"Math\"")));
+
+        MvcResult completed = mockMvc.perform(get("/api/quizzes/completed/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(completed))
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("id,completedAt\r\n")));
+
+        // Test invalid format
+        mockMvc.perform(get("/api/quizzes/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Cleanups
+    @Test
+    @Order(12)
+    void testCleanup() throws Exception {
         // Get the test user, most recent quiz and most recent completed quiz
         User user = userRepository.findByEmailIgnoreCase(validUserEmail);
         Quiz quiz = quizRepository.findById(getLatestQuizId()).orElse(null);
         CompletedQuiz completedQuiz = completedQuizRepository.findById(getLatestCompletedQuiz()).orElse(null);
+        String token = user != null ? tokenProvider.issue(user.getId(), user.getEmail()).getToken() : null;
 
         // Delete the test user
         if (user != null) {
             userRepository.delete(user);
+            // The quizzes of the user are deleted by the database and must not be served from the caches
+            if (quiz != null) {
+                assertThat(entityManagerFactory.getCache().contains(Quiz.class, quiz.getId())).isFalse();
+                assertThat(quizService.getQuizById(quiz.getId())).isNull();
+                assertThat(quizService.searchQuizzes(quiz.getTitle(), 10).stream()
+                        .noneMatch(hit -> hit.getId() == quiz.getId())).isTrue();
+            }
         }
 
         // Delete the most recent quiz
@@ -217,10 +429,25 @@ class SpringWebQuizEngineApplicationTests {
         }
 
         assertThat(userRepository.findByEmailIgnoreCase(validUserEmail)).isNull();
+        // Test if the tokens of the deleted user are rejected
+        if (token != null) {
+            mockMvc.perform(get("/api/quizzes").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isUnauthorized());
+        }
         assertThat(quizRepository.findById(getLatestQuizId()).orElse(null)).isNull();
         assertThat(completedQuizRepository.findById(getLatestCompletedQuiz()).orElse(null)).isNull();
     }
 
+    /**
+     * Helper method to get the statistics of a region of the second-level cache.
+     */
+    private EntityCacheEndpoint.RegionSummary getRegion(String name) {
+        return entityCacheEndpoint.regions().regions().stream()
+                .filter(region -> region.name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
     /**
      * Helper method to set the user as authenticated.
      */
@@ -0,0 +1,112 @@
+package io.dankoller.github.webquizengine.auth;
+
+import io.dankoller.github.webquizengine.entity.user.User;
+import io.dankoller.github.webquizengine.entity.user.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingAuthenticationProviderTest {
+    private static final String EMAIL = "john@doe.com";
+    private static final String PASSWORD = "secret12";
+
+    private final CredentialCache credentialCache =
+            new CredentialCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+    private final CountingProvider delegate = new CountingProvider();
+    private final CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, credentialCache);
+
+    // Test if verified credentials are served from the cache without asking the delegate again
+    @Test
+    void testCachedCredentialsSkipTheDelegate() {
+        Authentication first = provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+        Authentication second = provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+
+        assertThat(delegate.calls).isEqualTo(1);
+        assertThat(second.isAuthenticated()).isTrue();
+        assertThat(second.getPrincipal()).isSameAs(first.getPrincipal());
+        assertThat(((UserDetailsImpl) second.getPrincipal()).getUsername()).isEqualTo(EMAIL);
+    }
+
+    // Test if a wrong password is passed to the delegate, even if the user has a cached entry, and is never cached
+    @Test
+    void testWrongPasswordIsNotServedFromTheCache() {
+        provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, "wrong")))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+        assertThat(delegate.calls).isEqualTo(3);
+        assertThat(credentialCache.get(EMAIL, "wrong")).isNull();
+    }
+
+    // Test if updating or deleting a user evicts the cached credentials
+    @Test
+    void testInvalidatorEvictsTheUser() {
+        CredentialCacheInvalidator invalidator = new CredentialCacheInvalidator(credentialCache);
+        provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+        credentialCache.put("jane@doe.com", PASSWORD, delegate.userOf("jane@doe.com"));
+
+        invalidator.evict(new User("John@Doe.com", "hash"));
+        assertThat(credentialCache.get(EMAIL, PASSWORD)).isNull();
+        assertThat(credentialCache.get("jane@doe.com", PASSWORD)).isNotNull();
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+        assertThat(delegate.calls).isEqualTo(2);
+    }
+
+    // Test if a user that is updated in a transaction is evicted when the transaction commits
+    @Test
+    void testInvalidatorEvictsAfterCommit() {
+        CredentialCacheInvalidator invalidator = new CredentialCacheInvalidator(credentialCache);
+        provider.authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            invalidator.evict(new User(EMAIL, "hash"));
+            assertThat(credentialCache.get(EMAIL, PASSWORD)).isNotNull();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertThat(credentialCache.get(EMAIL, PASSWORD)).isNull();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * A provider that accepts every user with the test password and counts how often it is asked.
+     */
+    private static final class CountingProvider implements AuthenticationProvider {
+        private int calls;
+
+        @Override
+        public Authentication authenticate(Authentication authentication) {
+            calls++;
+            if (!PASSWORD.equals(authentication.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            UserDetailsImpl user = userOf(authentication.getName().toLowerCase());
+            return new UsernamePasswordAuthenticationToken(user, authentication.getCredentials(),
+                    user.getAuthorities());
+        }
+
+        @Override
+        public boolean supports(Class<?> authentication) {
+            return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+        }
+
+        private UserDetailsImpl userOf(String email) {
+            return new UserDetailsImpl(new User(email, "hash"));
+        }
+    }
+}
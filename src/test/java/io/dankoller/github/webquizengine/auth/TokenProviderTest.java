@@ -0,0 +1,45 @@
+package io.dankoller.github.webquizengine.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenProviderTest {
+    private static final String SECRET = "a-secret-that-is-only-used-in-tests";
+    private static final Instant NOW = Instant.parse("2023-01-01T12:00:00Z");
+
+    private final TokenProvider tokenProvider =
+            new TokenProvider(SECRET, Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    // Test if an issued token resolves to the user it was issued for
+    @Test
+    void testIssueAndVerify() {
+        String token = tokenProvider.issue(42, "john@doe.com").getToken();
+        assertThat(tokenProvider.verify(token)).isEqualTo(new TokenProvider.Claims(42, "john@doe.com"));
+    }
+
+    // Test if tokens signed with another secret or tampered with are rejected
+    @Test
+    void testRejectsForgedTokens() {
+        String token = tokenProvider.issue(42, "john@doe.com").getToken();
+        TokenProvider otherProvider =
+                new TokenProvider("another-secret", Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC));
+        assertThat(otherProvider.verify(token)).isNull();
+        assertThat(tokenProvider.verify("x" + token)).isNull();
+        assertThat(tokenProvider.verify("not-a-token")).isNull();
+    }
+
+    // Test if expired tokens are rejected
+    @Test
+    void testRejectsExpiredTokens() {
+        String token = tokenProvider.issue(42, "john@doe.com").getToken();
+        TokenProvider laterProvider = new TokenProvider(SECRET, Duration.ofHours(1),
+                Clock.fixed(NOW.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+        assertThat(laterProvider.verify(token)).isNull();
+    }
+}
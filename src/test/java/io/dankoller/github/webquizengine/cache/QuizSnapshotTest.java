@@ -0,0 +1,53 @@
+package io.dankoller.github.webquizengine.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuizSnapshotTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Test if the Accept-Encoding header is parsed with its weights
+    @Test
+    void testAcceptsGzip() {
+        assertThat(QuizSnapshot.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(QuizSnapshot.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(QuizSnapshot.acceptsGzip("*")).isTrue();
+        assertThat(QuizSnapshot.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(QuizSnapshot.acceptsGzip("gzip; q=0.0")).isFalse();
+        assertThat(QuizSnapshot.acceptsGzip("identity")).isFalse();
+        assertThat(QuizSnapshot.acceptsGzip(null)).isFalse();
+    }
+
+    // Test if the serialized bodies contain the response and only large responses are compressed
+    @Test
+    void testBody() throws IOException {
+        QuizSnapshot small = snapshot("Robot", "Bug");
+        assertThat(small.getBody(true).gzipped()).isFalse();
+        assertThat(objectMapper.readTree(small.getBody(false).bytes()).get("options").get(1).asText())
+                .isEqualTo("Bug");
+
+        QuizSnapshot large = snapshot("Robot ".repeat(100), "Bug");
+        QuizSnapshot.Body json = large.getBody(false);
+        QuizSnapshot.Body gzip = large.getBody(true);
+        assertThat(gzip.gzipped()).isTrue();
+        assertThat(gzip.bytes().length).isLessThan(json.bytes().length);
+        assertThat(gzip.etag()).isNotEqualTo(json.etag());
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(gzip.bytes()))) {
+            assertThat(input.readAllBytes()).isEqualTo(json.bytes());
+        }
+        assertThat(json.etag()).isNotEqualTo(small.getBody(false).etag());
+    }
+
+    private QuizSnapshot snapshot(String... options) {
+        Quiz quiz = new Quiz("The Java Logo", "What is depicted on the Java logo?", options, new int[]{1}, null);
+        quiz.setId(1);
+        return new QuizSnapshot(quiz, objectMapper);
+    }
+}
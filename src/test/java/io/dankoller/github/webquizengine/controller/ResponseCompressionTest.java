@@ -0,0 +1,81 @@
+package io.dankoller.github.webquizengine.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compression is done by Tomcat, so it is only tested against a running server
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:response-compression;DB_CLOSE_ON_EXIT=FALSE")
+class ResponseCompressionTest {
+    private static final String EMAIL = "compression@test.com";
+    private static final String PASSWORD = "secret12";
+
+    // The client does not decompress, so the Content-Encoding of the server is visible
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    // Test if a large quiz is compressed in the binary formats and can still be revalidated with its ETag
+    @Test
+    void testBinaryQuizIsCompressed() throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(uri("/api/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}")));
+        String option = "A long option that repeats itself. ".repeat(10);
+        HttpResponse<byte[]> posted = send(HttpRequest.newBuilder(uri("/api/quizzes"))
+                .header("Authorization", basicAuth())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Compression\"," +
+                        "\"text\":\"Which option is the long one?\"," +
+                        "\"options\":[\"" + option + "\",\"" + option + "\",\"" + option + "\",\"" + option + "\"]," +
+                        "\"answer\":[0]}")));
+        assertThat(posted.statusCode()).isEqualTo(200);
+        int id = JsonPath.read(new String(posted.body(), StandardCharsets.UTF_8), "$.id");
+
+        for (String format : new String[]{"application/cbor", "application/x-jackson-smile"}) {
+            HttpResponse<byte[]> quiz = send(quizRequest(id, format));
+            assertThat(quiz.statusCode()).isEqualTo(200);
+            assertThat(quiz.headers().firstValue("Content-Type")).hasValue(format);
+            assertThat(quiz.headers().firstValue("Content-Encoding")).hasValue("gzip");
+            String etag = quiz.headers().firstValue("ETag").orElseThrow();
+            assertThat(etag).startsWith("W/");
+
+            HttpResponse<byte[]> revalidated = send(quizRequest(id, format).header("If-None-Match", etag));
+            assertThat(revalidated.statusCode()).isEqualTo(304);
+        }
+    }
+
+    private HttpRequest.Builder quizRequest(int id, String format) {
+        return HttpRequest.newBuilder(uri("/api/quizzes/" + id))
+                .header("Authorization", basicAuth())
+                .header("Accept", format)
+                .header("Accept-Encoding", "gzip");
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String basicAuth() {
+        return "Basic " + Base64.getEncoder()
+                .encodeToString((EMAIL + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,39 @@
+package io.dankoller.github.webquizengine.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatementMonitorTest {
+
+    // Test if statements that only differ in their values have the same shape
+    @Test
+    void testShape() {
+        assertThat(SqlStatementMonitor.normalize("select * from quiz where id = 42 and title = 'It''s'"))
+                .isEqualTo("select * from quiz where id = ? and title = ?");
+        assertThat(SqlStatementMonitor.normalize(
+                "select quiz0_.id as id1_1_ from quiz quiz0_\n   where quiz0_.id in (?, ?,?)"))
+                .isEqualTo("select quiz0_.id as id1_1_ from quiz quiz0_ where quiz0_.id in (?)");
+    }
+
+    // Test if the shapes are sorted by their execution times
+    @Test
+    void testSlowestShapes() {
+        SqlStatementMonitor monitor = new SqlStatementMonitor(null, Duration.ofSeconds(1), 0, 10);
+        monitor.record("fast", 1_000_000, false);
+        monitor.record("fast", 1_000_000, false);
+        monitor.record("fast", 1_000_000, true);
+        monitor.record("slow", 2_000_000, false);
+
+        List<SqlStatementMonitor.ShapeSummary> byTotal = monitor.getSlowestShapes(10, SqlStatementMonitor.SortBy.TOTAL);
+        assertThat(byTotal).extracting(SqlStatementMonitor.ShapeSummary::shape).containsExactly("fast", "slow");
+        assertThat(byTotal.get(0).count()).isEqualTo(3);
+        assertThat(byTotal.get(0).errors()).isEqualTo(1);
+        assertThat(monitor.getSlowestShapes(1, SqlStatementMonitor.SortBy.MAX))
+                .extracting(SqlStatementMonitor.ShapeSummary::shape).containsExactly("slow");
+        monitor.destroy();
+    }
+}
@@ -0,0 +1,63 @@
+package io.dankoller.github.webquizengine.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuizSearchIndexTest {
+
+    // Test if the text is split into lower-case terms and single characters are ignored
+    @Test
+    void testTokenize() {
+        assertThat(QuizSearchIndex.tokenize("What is depicted on the Java-Logo? A cup, 42!"))
+                .containsExactly("what", "is", "depicted", "on", "the", "java", "logo", "cup", "42");
+        assertThat(QuizSearchIndex.tokenize(null)).isEmpty();
+    }
+
+    // Test if the matches are ranked and follow updates and removals
+    @Test
+    void testSearch() {
+        QuizSearchIndex index = new QuizSearchIndex(null);
+        index.index(1, "The Java Logo", "What is depicted on the Java logo?",
+                new String[]{"Robot", "Tea leaf", "Cup of coffee", "Bug"});
+        index.index(2, "Math", "Which of the following is equal to 4?", new String[]{"1+1", "2+2", "8-1", "5-1"});
+        index.index(3, "Coffee", "Where does the coffee plant grow?", new String[]{"Brazil", "Norway"});
+
+        assertThat(index.search("coffee", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(3, 1);
+        assertThat(index.search("coffee", 1)).extracting(QuizSearchIndex.Hit::id).containsExactly(3);
+        assertThat(index.search("JAVA robot", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(1);
+        assertThat(index.search("unknown", 10)).isEmpty();
+        assertThat(index.search("?", 10)).isEmpty();
+
+        index.index(3, "Tea", "Where does the tea plant grow?", new String[]{"China", "Norway"});
+        assertThat(index.search("coffee", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(1);
+        index.remove(1);
+        assertThat(index.search("coffee", 10)).isEmpty();
+        assertThat(index.search("tea", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(3);
+
+        // The number of the removed quiz is reused
+        index.index(4, "Coffee again", "Coffee?", new String[]{"Yes", "No"});
+        assertThat(index.search("coffee", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(4);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    // Test if removing a document keeps the postings of the documents that share its terms
+    @Test
+    void testRemoveKeepsSharedTerms() {
+        QuizSearchIndex index = new QuizSearchIndex(null);
+        for (int id = 1; id <= 5; id++) {
+            index.index(id, "Coffee " + id, "Question " + id + " about coffee", new String[]{"Yes", "No"});
+        }
+        index.remove(2);
+        index.remove(4);
+        index.index(3, "Tea", "Question about tea", new String[]{"Yes", "No"});
+
+        assertThat(index.search("coffee", 10)).extracting(QuizSearchIndex.Hit::id).containsExactlyInAnyOrder(1, 5);
+        assertThat(index.search("question", 10)).extracting(QuizSearchIndex.Hit::id)
+                .containsExactlyInAnyOrder(1, 3, 5);
+        index.remove(1);
+        index.remove(5);
+        assertThat(index.search("coffee", 10)).isEmpty();
+        assertThat(index.search("yes", 10)).extracting(QuizSearchIndex.Hit::id).containsExactly(3);
+    }
+}
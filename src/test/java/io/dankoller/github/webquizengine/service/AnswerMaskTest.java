@@ -0,0 +1,47 @@
+package io.dankoller.github.webquizengine.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnswerMaskTest {
+
+    // Test if the order of the selected options does not matter
+    @Test
+    void testOrderInsensitive() {
+        AnswerMask mask = AnswerMask.compile(new int[]{0, 2}, 4);
+        assertThat(mask.matches(new int[]{0, 2})).isTrue();
+        assertThat(mask.matches(new int[]{2, 0})).isTrue();
+        assertThat(mask.matches(new int[]{0})).isFalse();
+        assertThat(mask.matches(new int[]{0, 1, 2})).isFalse();
+    }
+
+    // Test if duplicates count once and out-of-range indices are rejected
+    @Test
+    void testDuplicatesAndOutOfRange() {
+        AnswerMask mask = AnswerMask.compile(new int[]{1}, 4);
+        assertThat(mask.matches(new int[]{1, 1})).isTrue();
+        assertThat(mask.matches(new int[]{1, 4})).isFalse();
+        assertThat(mask.matches(new int[]{1, -1})).isFalse();
+        // 65 is bit 1 of the next word and must not alias option 1
+        assertThat(mask.matches(new int[]{65})).isFalse();
+        assertThat(AnswerMask.compile(new int[]{7}, 4).matches(new int[]{7})).isFalse();
+    }
+
+    // Test if a quiz without a correct option is solved with an empty answer
+    @Test
+    void testEmptyAnswer() {
+        assertThat(AnswerMask.compile(null, 2).matches(new int[0])).isTrue();
+        assertThat(AnswerMask.compile(new int[0], 2).matches(null)).isTrue();
+        assertThat(AnswerMask.compile(null, 2).matches(new int[]{0})).isFalse();
+    }
+
+    // Test if quizzes with more than 64 options are graded correctly
+    @Test
+    void testManyOptions() {
+        AnswerMask mask = AnswerMask.compile(new int[]{3, 64, 99}, 100);
+        assertThat(mask.matches(new int[]{99, 3, 64})).isTrue();
+        assertThat(mask.matches(new int[]{3, 64})).isFalse();
+        assertThat(mask.matches(new int[]{3, 64, 99, 100})).isFalse();
+    }
+}
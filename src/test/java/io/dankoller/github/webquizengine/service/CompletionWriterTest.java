@@ -0,0 +1,116 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.entity.Quiz;
+import io.dankoller.github.webquizengine.entity.user.User;
+import io.dankoller.github.webquizengine.persistence.QuizRepository;
+import io.dankoller.github.webquizengine.persistence.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The tables are created by Hibernate and the SchemaMigration, like in production
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:completion-writer;DB_CLOSE_ON_EXIT=FALSE")
+class CompletionWriterTest {
+    private static final String EMAIL = "a@test.com";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TaskScheduler taskScheduler;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private QuizRepository quizRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UserStatistics userStatistics;
+    private int firstQuizId;
+    private int secondQuizId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM completed_quiz");
+        if (userRepository.findByNormalizedEmail(EMAIL) == null) {
+            userRepository.save(new User(EMAIL, "hash"));
+        }
+        String[] options = {"Robot", "Tea leaf"};
+        firstQuizId = quizRepository.save(new Quiz("First", "Question", options, new int[]{0}, null)).getId();
+        secondQuizId = quizRepository.save(new Quiz("Second", "Question", options, new int[]{0}, null)).getId();
+        userStatistics = new UserStatistics(jdbcTemplate, null, null, Duration.ofSeconds(30), 100);
+    }
+
+    // Test if a batch with a completion that violates a constraint still writes the other completions
+    @Test
+    void testFailedBatchIsWrittenRowByRow() {
+        CompletionWriter writer = new CompletionWriter(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                userStatistics, taskScheduler, meterRegistry, false, 100, 100, Duration.ofMillis(200),
+                Duration.ofMillis(50));
+        jdbcTemplate.execute("ALTER TABLE completed_quiz ADD CONSTRAINT test_rejected_quiz CHECK (id <> " +
+                secondQuizId + ")");
+        try {
+            writer.submitAll(List.of(firstQuizId, secondQuizId, firstQuizId), "A@test.com", LocalDateTime.now());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE completed_quiz DROP CONSTRAINT test_rejected_quiz");
+        }
+
+        assertThat(completions()).isEqualTo(2);
+        assertThat(userStatistics.getStatistics(EMAIL).getCompletions()).isEqualTo(2);
+        assertThat(meterRegistry.get("quiz.completions.failed").counter().count()).isEqualTo(1);
+    }
+
+    // Test if a batch that cannot get a connection is queued again and written by a later flush
+    @Test
+    void testBatchWithoutConnectionIsRetried() throws InterruptedException {
+        // Fails like a connection pool that timed out
+        AtomicInteger failures = new AtomicInteger(1);
+        DataSource unavailable = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new SQLTransientConnectionException("Connection is not available");
+                }
+                return super.getConnection();
+            }
+        };
+        CompletionWriter writer = new CompletionWriter(jdbcTemplate, new DataSourceTransactionManager(unavailable),
+                userStatistics, taskScheduler, meterRegistry, true, 100, 100, Duration.ofMillis(50),
+                Duration.ofMillis(50));
+        writer.start();
+        try {
+            writer.submitAll(List.of(firstQuizId, secondQuizId), EMAIL, LocalDateTime.now());
+            for (int i = 0; i < 100 && completions() < 2; i++) {
+                Thread.sleep(50);
+            }
+        } finally {
+            writer.stop();
+        }
+
+        assertThat(failures.get()).isNegative();
+        assertThat(completions()).isEqualTo(2);
+        assertThat(userStatistics.getStatistics(EMAIL).getCompletions()).isEqualTo(2);
+        assertThat(meterRegistry.get("quiz.completions.failed").counter().count()).isZero();
+    }
+
+    private int completions() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM completed_quiz", Integer.class);
+    }
+}
@@ -0,0 +1,61 @@
+package io.dankoller.github.webquizengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dankoller.github.webquizengine.cache.QuizSnapshot;
+import io.dankoller.github.webquizengine.entity.Quiz;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuizStatisticsTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private QuizStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:quiz-statistics;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS quiz_statistics (quiz_id INTEGER PRIMARY KEY, " +
+                "attempts BIGINT, successes BIGINT, option_counts VARCHAR(4096))");
+        statistics = new QuizStatistics(jdbcTemplate, null, null, Duration.ofSeconds(10));
+    }
+
+    // Test if every selected option is counted once per attempt
+    @Test
+    void testOptionsAreCountedOnce() {
+        QuizSnapshot quiz = snapshot(new String[]{"Robot", "Tea leaf", "Cup of coffee"}, new int[]{2});
+        statistics.recordAttempt(quiz, new int[]{2, 2, 0, 5, -1}, false);
+        statistics.recordAttempt(quiz, new int[]{2}, true);
+
+        assertThat(statistics.getStatistics(quiz).getAttempts()).isEqualTo(2);
+        assertThat(statistics.getStatistics(quiz).getSuccesses()).isEqualTo(1);
+        assertThat(statistics.getStatistics(quiz).getOptionCounts()).containsExactly(1, 0, 2);
+    }
+
+    // Test if attempts that were graded against the quiz before a patch are not counted after the reset
+    @Test
+    void testAttemptsOfTheOldVersionAreDroppedAfterReset() {
+        QuizSnapshot before = snapshot(new String[]{"Robot", "Tea leaf"}, new int[]{0});
+        QuizSnapshot after = snapshot(new String[]{"Robot", "Tea leaf"}, new int[]{1});
+        statistics.recordAttempt(before, new int[]{0}, true);
+
+        statistics.reset(after.getId(), after.getAnswerVersion());
+        statistics.recordAttempt(before, new int[]{0}, true);
+        assertThat(statistics.getStatistics(after).getAttempts()).isZero();
+
+        statistics.recordAttempt(after, new int[]{1}, true);
+        assertThat(statistics.getStatistics(after).getAttempts()).isEqualTo(1);
+        assertThat(statistics.getStatistics(after).getOptionCounts()).containsExactly(0, 1);
+    }
+
+    private QuizSnapshot snapshot(String[] options, int[] answer) {
+        Quiz quiz = new Quiz("The Java Logo", "What is depicted on the Java logo?", options, answer, null);
+        quiz.setId(1);
+        return new QuizSnapshot(quiz, objectMapper);
+    }
+}
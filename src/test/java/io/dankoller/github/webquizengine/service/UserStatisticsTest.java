@@ -0,0 +1,86 @@
+package io.dankoller.github.webquizengine.service;
+
+import io.dankoller.github.webquizengine.response.LeaderboardEntryResponse;
+import io.dankoller.github.webquizengine.response.SolvedQuizResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserStatisticsTest {
+    private UserStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:user-statistics;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user (id BIGINT PRIMARY KEY, normalized_email VARCHAR(255))");
+        jdbcTemplate.update("MERGE INTO user VALUES (1, 'a@test.com'), (2, 'b@test.com')");
+        statistics = new UserStatistics(jdbcTemplate, null, null, Duration.ofSeconds(30), 100);
+    }
+
+    // Test if the leaderboard follows the counters and ignores the case of the email
+    @Test
+    void testLeaderboard() {
+        LocalDateTime now = LocalDateTime.now();
+        statistics.recordCompletion("a@test.com", 1, now);
+        statistics.recordCompletion("b@test.com", 1, now);
+        statistics.recordCompletion("B@test.com", 1, now.plusMinutes(1));
+
+        assertThat(statistics.getLeaderboard(10))
+                .extracting(LeaderboardEntryResponse::getUserId)
+                .containsExactly(2L, 1L);
+        assertThat(statistics.getLeaderboard(1)).hasSize(1);
+        assertThat(statistics.getStatistics("b@test.com").getCompletions()).isEqualTo(2);
+        assertThat(statistics.getStatistics("b@test.com").getLastCompletedAt()).isEqualTo(now.plusMinutes(1));
+
+        statistics.recordCompletion("a@test.com", 2, now);
+        statistics.recordCompletion("a@test.com", 3, now);
+        assertThat(statistics.getLeaderboard(10))
+                .extracting(LeaderboardEntryResponse::getCompletions)
+                .containsExactly(3L, 2L);
+        assertThat(statistics.getStatistics("c@test.com").getCompletions()).isZero();
+
+        // Deleted users leave the leaderboard
+        statistics.removeUser("A@test.com");
+        assertThat(statistics.getLeaderboard(10))
+                .extracting(LeaderboardEntryResponse::getUserId)
+                .containsExactly(2L);
+        assertThat(statistics.getStatistics("a@test.com").getCompletions()).isZero();
+    }
+
+    // Test if quizzes that are solved again are counted once in the solved quizzes
+    @Test
+    void testSolvedQuizzes() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 100; i++) {
+            statistics.recordCompletion("a@test.com", 7, now);
+        }
+        statistics.recordCompletion("a@test.com", 3, now);
+        statistics.recordCompletion("a@test.com", 100_000, now);
+
+        assertThat(statistics.getStatistics("a@test.com").getCompletions()).isEqualTo(102);
+        assertThat(statistics.getStatistics("a@test.com").getDistinctCompletions()).isEqualTo(3);
+        assertThat(statistics.hasSolved("a@test.com", 7)).isTrue();
+        assertThat(statistics.hasSolved("a@test.com", 8)).isFalse();
+        assertThat(statistics.getSolvedQuizzes("a@test.com", 0, 2).getContent())
+                .extracting(SolvedQuizResponse::getId).containsExactly(100_000, 7);
+        assertThat(statistics.getSolvedQuizzes("a@test.com", 1, 2).getContent())
+                .extracting(SolvedQuizResponse::getId).containsExactly(3);
+        assertThat(statistics.getSolvedQuizzes("a@test.com", 1, 2).getTotalElements()).isEqualTo(3);
+    }
+
+    // Test if a completion of a user that has been deleted since it was stored is ignored
+    @Test
+    void testCompletionOfDeletedUser() {
+        statistics.recordCompletion("deleted@test.com", 1, LocalDateTime.now());
+
+        assertThat(statistics.getStatistics("deleted@test.com").getCompletions()).isZero();
+        assertThat(statistics.getLeaderboard(10)).isEmpty();
+    }
+}